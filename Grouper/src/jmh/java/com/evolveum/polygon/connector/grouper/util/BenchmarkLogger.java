@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.common.logging.LogSpi;
+
+/**
+ * Logger of the benchmark forks, only warnings and errors are printed so that the benchmarks do not measure the
+ * formatting of the debug messages. Selected by the system property 'org.identityconnectors.common.logging.class'.
+ */
+public class BenchmarkLogger implements LogSpi {
+
+    static final String JVM_ARG = "-Dorg.identityconnectors.common.logging.class="
+            + "com.evolveum.polygon.connector.grouper.util.BenchmarkLogger";
+
+    @Override
+    public void log(Class<?> clazz, String method, Log.Level level, String message, Throwable ex) {
+
+        if (isLoggable(clazz, level)) {
+
+            System.err.println(level + " " + clazz.getName() + ": " + message);
+        }
+    }
+
+    @Override
+    public void log(Class<?> clazz, StackTraceElement caller, Log.Level level, String message, Throwable ex) {
+        log(clazz, caller != null ? caller.getMethodName() : null, level, message, ex);
+    }
+
+    @Override
+    public boolean isLoggable(Class<?> clazz, Log.Level level) {
+        return level == Log.Level.WARN || level == Log.Level.ERROR;
+    }
+
+    @Override
+    public boolean needToInferCaller(Class<?> clazz, Log.Level level) {
+        return false;
+    }
+}
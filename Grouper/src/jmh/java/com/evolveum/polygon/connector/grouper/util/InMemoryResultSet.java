@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.List;
+
+/**
+ * Forward only result set over rows kept in memory, implementing the subset of {@link ResultSet} read by the object
+ * processing. Values are kept as returned, e.g. numeric columns as {@link Long}, so that reading them does not
+ * allocate. {@link ResultSet#beforeFirst()} rewinds the result set, so that it can be iterated repeatedly.
+ */
+public class InMemoryResultSet implements InvocationHandler {
+
+    private final String[] columnNames;
+    private final List<Object[]> rows;
+    private final ResultSetMetaData metaData;
+
+    private int cursor = -1;
+    private boolean wasNull = false;
+
+    private InMemoryResultSet(String[] columnNames, List<Object[]> rows) {
+        this.columnNames = columnNames;
+        this.rows = rows;
+        this.metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, this::invokeMetaData);
+    }
+
+    public static ResultSet create(String[] columnNames, List<Object[]> rows) {
+
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new InMemoryResultSet(columnNames, rows));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+
+        switch (method.getName()) {
+            case "next":
+                cursor++;
+                return cursor < rows.size();
+            case "getMetaData":
+                return metaData;
+            case "getString":
+                Object value = getValue(args);
+                return value != null ? value.toString() : null;
+            case "getLong":
+                Object number = getValue(args);
+                return number != null ? (Long) number : 0L;
+            case "getCharacterStream":
+                Object text = getValue(args);
+                return text != null ? new StringReader(text.toString()) : null;
+            case "wasNull":
+                return wasNull;
+            case "beforeFirst":
+                cursor = -1;
+                return null;
+            case "isClosed":
+                return false;
+            case "close":
+                return null;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "InMemoryResultSet" + List.of(columnNames);
+            default:
+                throw new UnsupportedOperationException("Not supported by the in-memory result set: "
+                        + method.getName());
+        }
+    }
+
+    private Object invokeMetaData(Object proxy, Method method, Object[] args) {
+
+        switch (method.getName()) {
+            case "getColumnCount":
+                return columnNames.length;
+            case "getColumnName":
+            case "getColumnLabel":
+                return columnNames[(Integer) args[0] - 1];
+            default:
+                throw new UnsupportedOperationException("Not supported by the in-memory result set meta data: "
+                        + method.getName());
+        }
+    }
+
+    private Object getValue(Object[] args) {
+
+        if (!(args[0] instanceof Integer)) {
+
+            throw new UnsupportedOperationException("Columns of the in-memory result set are read by index");
+        }
+
+        Object value = rows.get(cursor)[(Integer) args[0] - 1];
+        wasNull = value == null;
+
+        return value;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import org.identityconnectors.framework.common.objects.AttributeBuilder;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.common.objects.Uid;
+import org.identityconnectors.framework.common.objects.filter.Filter;
+import org.identityconnectors.framework.common.objects.filter.FilterBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translation of midPoint like filters and building of the search, sync, IN list and count statements of the
+ * group object class. No database is needed, the statements are only built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkLogger.JVM_ARG)
+public class QueryPlanningBenchmark {
+
+    private static final String EXTENSION_ATTRIBUTE = "ext_description";
+
+    @Param({"4", "8"})
+    public int filterDepth;
+
+    @Param({"1000"})
+    public int uidCount;
+
+    private GrouperConfiguration configuration;
+    private GroupProcessing processing;
+    private Map<String, Map<String, Class>> searchColumns;
+    private Map<Map<String, String>, String> searchJoins;
+    private Filter deepFilter;
+    private Filter uidDisjunction;
+    private Filter containsAllValuesFilter;
+    private Set<String> uids;
+    private OperationOptions syncOptions;
+
+    @Setup
+    public void setup() {
+
+        configuration = new GrouperConfiguration();
+        configuration.setExtendedGroupProperties(new String[]{EXTENSION_ATTRIBUTE});
+        processing = new GroupProcessing(configuration);
+
+        searchColumns = new HashMap<>();
+        searchColumns.put(GroupProcessing.TABLE_GR_NAME, processing.columns);
+        searchColumns.put(ObjectProcessing.TABLE_MEMBERSHIP_NAME, processing.membershipColumns);
+        searchColumns.put(GroupProcessing.TABLE_GR_EXTENSION_NAME, processing.extensionColumns);
+
+        searchJoins = new HashMap<>();
+        searchJoins.put(Map.of(ObjectProcessing.TABLE_MEMBERSHIP_NAME, ObjectProcessing.ATTR_GR_ID_IDX),
+                GroupProcessing.ATTR_UID);
+        searchJoins.put(Map.of(GroupProcessing.TABLE_GR_EXTENSION_NAME, ObjectProcessing.ATTR_GR_ID_IDX),
+                GroupProcessing.ATTR_UID);
+
+        deepFilter = buildTree(filterDepth, 0);
+
+        List<Filter> uidFilters = new ArrayList<>();
+        uids = new LinkedHashSet<>();
+
+        for (int i = 0; i < uidCount; i++) {
+
+            uids.add(Integer.toString(100000 + i));
+            uidFilters.add(FilterBuilder.equalTo(new Uid(Integer.toString(100000 + i))));
+        }
+
+        uidDisjunction = FilterBuilder.or(uidFilters);
+
+        containsAllValuesFilter = FilterBuilder.and(
+                FilterBuilder.containsAllValues(AttributeBuilder.build(GroupProcessing.ATTR_MEMBERS,
+                        "1001", "1002", "1003", "1004")),
+                FilterBuilder.startsWith(AttributeBuilder.build(GroupProcessing.ATTR_NAME, "app:finance:")));
+
+        syncOptions = new OperationOptionsBuilder()
+                .setAttributesToGet(GroupProcessing.ATTR_MEMBERS, EXTENSION_ATTRIBUTE).build();
+    }
+
+    /**
+     * Alternating AND and OR nodes with the mix of conditions produced by midPoint searches in the leaves.
+     */
+    private Filter buildTree(int depth, int index) {
+
+        if (depth == 0) {
+
+            switch (index % 4) {
+                case 0:
+                    return FilterBuilder.equalTo(AttributeBuilder.build(GroupProcessing.ATTR_NAME,
+                            "app:group:" + index));
+                case 1:
+                    return FilterBuilder.startsWith(AttributeBuilder.build(GroupProcessing.ATTR_NAME,
+                            "app:" + index + ":"));
+                case 2:
+                    return FilterBuilder.equalsIgnoreCase(AttributeBuilder.build(EXTENSION_ATTRIBUTE,
+                            "Value " + index));
+                default:
+                    return FilterBuilder.not(FilterBuilder.equalTo(new Uid(Integer.toString(index))));
+            }
+        }
+
+        Filter left = buildTree(depth - 1, index * 2);
+        Filter right = buildTree(depth - 1, index * 2 + 1);
+
+        return depth % 2 == 0 ? FilterBuilder.and(left, right) : FilterBuilder.or(left, right);
+    }
+
+    private ResourceQuery translate(Filter filter) {
+
+        return filter.accept(new FilterHandler(), new ResourceQuery(GroupProcessing.O_CLASS, searchColumns,
+                configuration));
+    }
+
+    private QueryBuilder searchQueryBuilder(Filter filter) {
+
+        QueryBuilder queryBuilder = new QueryBuilder(GroupProcessing.O_CLASS, filter, searchColumns,
+                GroupProcessing.TABLE_GR_NAME, searchJoins, null);
+        queryBuilder.setUseFullAlias(true);
+        queryBuilder.setConfiguration(configuration);
+
+        return queryBuilder;
+    }
+
+    @Benchmark
+    public String translateDeepTree() {
+
+        return translate(deepFilter).getCurrentQuerySnippet();
+    }
+
+    @Benchmark
+    public String translateUidDisjunction() {
+
+        return translate(uidDisjunction).getCurrentQuerySnippet();
+    }
+
+    @Benchmark
+    public String translateContainsAllValues() {
+
+        return translate(containsAllValuesFilter).getCurrentQuerySnippet();
+    }
+
+    @Benchmark
+    public String buildSearch() {
+
+        return searchQueryBuilder(deepFilter).build();
+    }
+
+    @Benchmark
+    public String buildSync() {
+
+        return processing.syncQuery(new SyncToken(0L), syncOptions, null, false).build();
+    }
+
+    @Benchmark
+    public String buildInList() {
+
+        QueryBuilder queryBuilder = searchQueryBuilder(null);
+        queryBuilder.setInStatement(Map.of(GroupProcessing.TABLE_GR_NAME + "." + GroupProcessing.ATTR_UID, uids));
+
+        return queryBuilder.build();
+    }
+
+    @Benchmark
+    public String buildCount() {
+
+        QueryBuilder queryBuilder = searchQueryBuilder(deepFilter);
+        queryBuilder.asCount();
+
+        return queryBuilder.build();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the rows of a group search into grouper objects and their conversion to connector objects, the main
+ * CPU path of the search and sync operations. The rows are read from an {@link InMemoryResultSet} with the columns
+ * of the search query:
+ * <ul>
+ * <li>MAIN - the columns of the group table only,</li>
+ * <li>MEMBERSHIPS - the group table joined with the memberships,</li>
+ * <li>EXTENSIONS - the group table joined with the memberships and the extension attributes.</li>
+ * </ul>
+ * Each invocation decodes {@value #ROWS} rows, 'fanOut' rows per object, and the results are reported per row.
+ * The allocation per object is the normalized allocation rate of the GC profiler multiplied by the fan out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkLogger.JVM_ARG)
+public class RowDecodingBenchmark {
+
+    private static final int ROWS = 10000;
+    private static final int EXTENSION_ATTRIBUTES = 4;
+
+    @Param({"MAIN", "MEMBERSHIPS", "EXTENSIONS"})
+    public String layout;
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int fanOut;
+
+    private GroupProcessing processing;
+    private ResultSet resultSet;
+    private Map<String, String> renameSet;
+
+    @Setup
+    public void setup() {
+
+        GrouperConfiguration configuration = new GrouperConfiguration();
+        processing = new GroupProcessing(configuration);
+        renameSet = Map.of(GroupProcessing.ATTR_MEMBERS_NATIVE, GroupProcessing.ATTR_MEMBERS);
+
+        boolean memberships = !"MAIN".equals(layout);
+        boolean extensions = "EXTENSIONS".equals(layout);
+
+        List<String> columnNames = new ArrayList<>(List.of(
+                column(GroupProcessing.TABLE_GR_NAME, GroupProcessing.ATTR_UID),
+                column(GroupProcessing.TABLE_GR_NAME, GroupProcessing.ATTR_NAME),
+                column(GroupProcessing.TABLE_GR_NAME, "display_name"),
+                column(GroupProcessing.TABLE_GR_NAME, "description"),
+                column(GroupProcessing.TABLE_GR_NAME, ObjectProcessing.ATTR_MODIFIED),
+                column(GroupProcessing.TABLE_GR_NAME, ObjectProcessing.ATTR_DELETED)));
+
+        if (memberships) {
+
+            columnNames.add(column(ObjectProcessing.TABLE_MEMBERSHIP_NAME, ObjectProcessing.ATTR_SCT_ID_IDX));
+            columnNames.add(column(ObjectProcessing.TABLE_MEMBERSHIP_NAME, ObjectProcessing.ATTR_MODIFIED));
+            columnNames.add(column(ObjectProcessing.TABLE_MEMBERSHIP_NAME, ObjectProcessing.ATTR_DELETED));
+        }
+
+        if (extensions) {
+
+            columnNames.add(column(GroupProcessing.TABLE_GR_EXTENSION_NAME, ObjectProcessing.ATTR_EXT_NAME));
+            columnNames.add(column(GroupProcessing.TABLE_GR_EXTENSION_NAME, ObjectProcessing.ATTR_EXT_VALUE));
+            columnNames.add(column(GroupProcessing.TABLE_GR_EXTENSION_NAME, ObjectProcessing.ATTR_MODIFIED));
+            columnNames.add(column(GroupProcessing.TABLE_GR_EXTENSION_NAME, ObjectProcessing.ATTR_DELETED));
+        }
+
+        List<Object[]> rows = new ArrayList<>(ROWS);
+
+        for (int i = 0; i < ROWS; i++) {
+
+            long groupId = 10000L + i / fanOut;
+            int index = i % fanOut;
+            List<Object> row = new ArrayList<>(List.of(groupId, "app:group:" + groupId, "Group " + groupId,
+                    "Description of the group " + groupId, 1690000000000L + groupId, "F"));
+
+            if (memberships) {
+
+                // With extension attributes the rows are the product of the memberships and the attributes
+                long subjectId = 500000L + (extensions ? index / EXTENSION_ATTRIBUTES : index);
+
+                row.addAll(List.of(subjectId, 1690000000000L + subjectId, "F"));
+            }
+
+            if (extensions) {
+
+                int attribute = index % EXTENSION_ATTRIBUTES;
+
+                row.addAll(List.of("ext_attribute_" + attribute, "Value " + attribute + " of the group " + groupId,
+                        1690000000000L + attribute, "F"));
+            }
+
+            rows.add(row.toArray());
+        }
+
+        resultSet = InMemoryResultSet.create(columnNames.toArray(new String[0]), rows);
+    }
+
+    private static String column(String table, String name) {
+        return table + "$" + name;
+    }
+
+    /**
+     * Merges the decoded rows into objects the way the search of the group object class does.
+     */
+    private Map<String, GrouperObject> decode() throws SQLException {
+
+        Map<String, GrouperObject> objects = new LinkedHashMap<>();
+        resultSet.beforeFirst();
+
+        while (resultSet.next()) {
+
+            GrouperObject go = processing.buildGrouperObject(GroupProcessing.ATTR_UID, GroupProcessing.ATTR_NAME,
+                    resultSet, processing.objectConstructionSchema, processing.multiValuedAttributesCatalogue,
+                    renameSet);
+
+            GrouperObject mapObject = objects.get(go.getIdentifier());
+
+            if (mapObject != null) {
+
+                for (Map.Entry<String, Object> attribute : go.getAttributes().entrySet()) {
+
+                    mapObject.addAttribute(attribute.getKey(), attribute.getValue(),
+                            processing.multiValuedAttributesCatalogue);
+                }
+            } else {
+
+                objects.put(go.getIdentifier(), go);
+            }
+        }
+
+        return objects;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Map<String, GrouperObject> decodeRows() throws SQLException {
+
+        return decode();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void decodeAndBuildConnectorObjects(Blackhole blackhole) throws SQLException {
+
+        for (GrouperObject grouperObject : decode().values()) {
+
+            ConnectorObject connectorObject = processing.buildConnectorObject(GroupProcessing.O_CLASS,
+                    grouperObject).build();
+
+            blackhole.consume(connectorObject);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import org.identityconnectors.common.logging.Log;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * Creates and fills the tables of the Grouper provisioning with a synthetic data set of a given size. The tables
+ * are dropped and created again, the rows are loaded by 'COPY' and the indexes are created after the load.
+ * <p>
+ * The sizes of the groups follow the Zipf distribution, i.e. the group of the rank r has approximately
+ * 1 / r^s of the memberships of the largest group. The members of a group are a contiguous range of subjects
+ * starting at a random subject. Each object has each of the extension attributes with the given density.
+ * <p>
+ * The generator also simulates the change stream of the Grouper provisioning, see {@link #simulateChanges(int)}.
+ */
+public class ScaleDataGenerator {
+    private static final Log LOG = Log.getLog(ScaleDataGenerator.class);
+
+    private final Connection connection;
+    private final String tablePrefix;
+    private final int subjects;
+    private final int groups;
+    private final long memberships;
+    private final double zipfExponent;
+    private final int extensionAttributes;
+    private final double extensionDensity;
+    private final Random random;
+
+    private long timestamp;
+
+    public ScaleDataGenerator(Connection connection, String tablePrefix, int subjects, int groups, long memberships,
+                              double zipfExponent, int extensionAttributes, double extensionDensity, long seed) {
+        this.connection = connection;
+        this.tablePrefix = tablePrefix;
+        this.subjects = subjects;
+        this.groups = groups;
+        this.memberships = memberships;
+        this.zipfExponent = zipfExponent;
+        this.extensionAttributes = extensionAttributes;
+        this.extensionDensity = extensionDensity;
+        this.random = new Random(seed);
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static String getExtensionAttributeName(int index) {
+        return "ext_" + index;
+    }
+
+    /**
+     * Drops, creates and fills the tables. Returns the number of generated memberships.
+     */
+    public long generate() throws SQLException {
+
+        createTables();
+
+        LOG.info("Generating {0} subjects", subjects);
+
+        try (CopyWriter writer = new CopyWriter(table("_mp_subjects"),
+                "subject_id_index, subject_id, last_modified, deleted")) {
+
+            for (int i = 0; i < subjects; i++) {
+
+                writer.row(subjectId(i), "subject" + i, nextTimestamp(), "F");
+            }
+        }
+
+        LOG.info("Generating {0} groups", groups);
+
+        try (CopyWriter writer = new CopyWriter(table("_mp_groups"),
+                "id_index, group_name, display_name, description, last_modified, deleted")) {
+
+            for (int i = 0; i < groups; i++) {
+
+                writer.row(groupId(i), "app:scale:group" + i, "Scale group " + i, "Generated group of the rank " + i,
+                        nextTimestamp(), "F");
+            }
+        }
+
+        LOG.info("Generating approximately {0} memberships", memberships);
+
+        long generated = 0;
+        double harmonic = 0;
+
+        for (int rank = 1; rank <= groups; rank++) {
+
+            harmonic = harmonic + 1 / Math.pow(rank, zipfExponent);
+        }
+
+        try (CopyWriter writer = new CopyWriter(table("_mp_memberships"),
+                "group_id_index, subject_id_index, last_modified, deleted")) {
+
+            for (int i = 0; i < groups; i++) {
+
+                long size = Math.max(1, Math.round(memberships / harmonic / Math.pow(i + 1, zipfExponent)));
+                size = Math.min(size, subjects);
+                int first = random.nextInt(subjects);
+
+                for (long j = 0; j < size; j++) {
+
+                    writer.row(groupId(i), subjectId((int) ((first + j) % subjects)), nextTimestamp(), "F");
+                }
+
+                generated = generated + size;
+            }
+        }
+
+        LOG.info("Generating extension attributes with the density {0}", extensionDensity);
+
+        writeExtensionAttributes(table("_mp_group_attributes"), "group_id_index", groups, true);
+        writeExtensionAttributes(table("_mp_subject_attributes"), "subject_id_index", subjects, false);
+
+        createIndexes();
+
+        return generated;
+    }
+
+    private void writeExtensionAttributes(String table, String idColumn, int objects, boolean isGroup)
+            throws SQLException {
+
+        try (CopyWriter writer = new CopyWriter(table, idColumn
+                + ", attribute_name, attribute_value, last_modified, deleted")) {
+
+            for (int i = 0; i < objects; i++) {
+
+                for (int a = 0; a < extensionAttributes; a++) {
+
+                    if (random.nextDouble() < extensionDensity) {
+
+                        writer.row(isGroup ? groupId(i) : subjectId(i), getExtensionAttributeName(a),
+                                "value " + a + " of " + i, nextTimestamp(), "F");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Touches the given number of rows, in the proportion of 4 groups, 4 new or renewed memberships, 1 deleted
+     * membership and 1 subject out of 10 changes. Each touched row gets a new time stamp. Returns the latest time
+     * stamp of the changes.
+     */
+    public long simulateChanges(int changes) throws SQLException {
+
+        int touchedGroups = changes * 4 / 10;
+        int addedMemberships = changes * 4 / 10;
+        int deletedMemberships = changes / 10;
+        int touchedSubjects = changes - touchedGroups - addedMemberships - deletedMemberships;
+
+        try (PreparedStatement groupUpdate = connection.prepareStatement("UPDATE " + table("_mp_groups")
+                + " SET last_modified = ? WHERE id_index = ?");
+             PreparedStatement subjectUpdate = connection.prepareStatement("UPDATE " + table("_mp_subjects")
+                     + " SET last_modified = ? WHERE subject_id_index = ?");
+             PreparedStatement membershipUpsert = connection.prepareStatement("INSERT INTO "
+                     + table("_mp_memberships") + " (group_id_index, subject_id_index, last_modified, deleted) "
+                     + "VALUES (?, ?, ?, 'F') ON CONFLICT (group_id_index, subject_id_index) "
+                     + "DO UPDATE SET last_modified = EXCLUDED.last_modified, deleted = 'F'");
+             PreparedStatement membershipDelete = connection.prepareStatement("UPDATE " + table("_mp_memberships")
+                     + " SET last_modified = ?, deleted = 'T' WHERE ctid = (SELECT ctid FROM "
+                     + table("_mp_memberships") + " WHERE group_id_index = ? AND deleted = 'F' LIMIT 1)")) {
+
+            for (int i = 0; i < touchedGroups; i++) {
+
+                groupUpdate.setLong(1, nextTimestamp());
+                groupUpdate.setLong(2, groupId(random.nextInt(groups)));
+                groupUpdate.addBatch();
+            }
+
+            for (int i = 0; i < touchedSubjects; i++) {
+
+                subjectUpdate.setLong(1, nextTimestamp());
+                subjectUpdate.setLong(2, subjectId(random.nextInt(subjects)));
+                subjectUpdate.addBatch();
+            }
+
+            for (int i = 0; i < addedMemberships; i++) {
+
+                membershipUpsert.setLong(1, groupId(random.nextInt(groups)));
+                membershipUpsert.setLong(2, subjectId(random.nextInt(subjects)));
+                membershipUpsert.setLong(3, nextTimestamp());
+                membershipUpsert.addBatch();
+            }
+
+            for (int i = 0; i < deletedMemberships; i++) {
+
+                membershipDelete.setLong(1, nextTimestamp());
+                membershipDelete.setLong(2, groupId(random.nextInt(groups)));
+                membershipDelete.addBatch();
+            }
+
+            groupUpdate.executeBatch();
+            subjectUpdate.executeBatch();
+            membershipUpsert.executeBatch();
+            membershipDelete.executeBatch();
+        }
+
+        return timestamp;
+    }
+
+    private void createTables() throws SQLException {
+
+        try (Statement statement = connection.createStatement()) {
+
+            for (String table : new String[]{"_mp_subject_attributes", "_mp_group_attributes", "_mp_memberships",
+                    "_mp_groups", "_mp_subjects"}) {
+
+                statement.execute("DROP TABLE IF EXISTS " + table(table));
+            }
+
+            statement.execute("CREATE TABLE " + table("_mp_subjects") + " (subject_id_index BIGINT PRIMARY KEY, "
+                    + "subject_id VARCHAR(255), last_modified BIGINT NOT NULL, deleted VARCHAR(1) NOT NULL)");
+            statement.execute("CREATE TABLE " + table("_mp_groups") + " (id_index BIGINT PRIMARY KEY, "
+                    + "group_name VARCHAR(1024), display_name VARCHAR(1024), description VARCHAR(1024), "
+                    + "last_modified BIGINT NOT NULL, deleted VARCHAR(1) NOT NULL)");
+            statement.execute("CREATE TABLE " + table("_mp_memberships") + " (group_id_index BIGINT NOT NULL, "
+                    + "subject_id_index BIGINT NOT NULL, last_modified BIGINT NOT NULL, "
+                    + "deleted VARCHAR(1) NOT NULL)");
+            statement.execute("CREATE TABLE " + table("_mp_group_attributes") + " (group_id_index BIGINT NOT NULL, "
+                    + "attribute_name VARCHAR(1024) NOT NULL, attribute_value VARCHAR(4000), "
+                    + "last_modified BIGINT NOT NULL, deleted VARCHAR(1) NOT NULL)");
+            statement.execute("CREATE TABLE " + table("_mp_subject_attributes") + " (subject_id_index BIGINT NOT NULL, "
+                    + "attribute_name VARCHAR(1024) NOT NULL, attribute_value VARCHAR(4000), "
+                    + "last_modified BIGINT NOT NULL, deleted VARCHAR(1) NOT NULL)");
+        }
+    }
+
+    private void createIndexes() throws SQLException {
+
+        LOG.info("Creating indexes");
+
+        try (Statement statement = connection.createStatement()) {
+
+            statement.execute("ALTER TABLE " + table("_mp_memberships")
+                    + " ADD PRIMARY KEY (group_id_index, subject_id_index)");
+            statement.execute("CREATE INDEX ON " + table("_mp_memberships") + " (subject_id_index)");
+            statement.execute("CREATE INDEX ON " + table("_mp_group_attributes") + " (group_id_index)");
+            statement.execute("CREATE INDEX ON " + table("_mp_subject_attributes") + " (subject_id_index)");
+
+            for (String table : new String[]{"_mp_subjects", "_mp_groups", "_mp_memberships",
+                    "_mp_group_attributes", "_mp_subject_attributes"}) {
+
+                statement.execute("CREATE INDEX ON " + table(table) + " (last_modified)");
+                statement.execute("ANALYZE " + table(table));
+            }
+        }
+    }
+
+    private String table(String name) {
+        return tablePrefix + name;
+    }
+
+    private long nextTimestamp() {
+        return timestamp++;
+    }
+
+    private static long groupId(int index) {
+        return 1000000000L + index;
+    }
+
+    private static long subjectId(int index) {
+        return 2000000000L + index;
+    }
+
+    /**
+     * Streams tab separated rows to a 'COPY FROM STDIN' statement. The generated values contain no tabs,
+     * backslashes nor line breaks, so they are not escaped.
+     */
+    private class CopyWriter implements AutoCloseable {
+
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE);
+
+        CopyWriter(String table, String columns) throws SQLException {
+
+            this.copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY " + table + " (" + columns + ") FROM STDIN");
+        }
+
+        void row(Object... values) throws SQLException {
+
+            for (int i = 0; i < values.length; i++) {
+
+                if (i > 0) {
+
+                    buffer.append('\t');
+                }
+
+                buffer.append(values[i]);
+            }
+
+            buffer.append('\n');
+
+            if (buffer.length() >= BUFFER_SIZE) {
+
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+
+            try {
+
+                flush();
+                copyIn.endCopy();
+            } finally {
+
+                if (copyIn.isActive()) {
+
+                    copyIn.cancelCopy();
+                }
+            }
+        }
+    }
+}
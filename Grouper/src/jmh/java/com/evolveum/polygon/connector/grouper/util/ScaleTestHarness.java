@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConnection;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.SearchResult;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.spi.SearchResultsHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End to end throughput test of the connector against a generated data set, see {@link ScaleDataGenerator}. The
+ * connection is read from the properties of the integration tests, the tables are created with their own prefix.
+ * The harness measures the full search and the paged search of both object classes and the synchronization of
+ * the group and all object classes after simulated changes. The results are written as a JSON report, which can be
+ * compared across versions of the connector.
+ * <p>
+ * The test is configured by system properties, see the benchmarks profile of the module:
+ * <ul>
+ * <li>scale.tablePrefix - the prefix of the generated tables, 'scale' by default,</li>
+ * <li>scale.generate - whether to generate the tables, or to reuse the tables of the previous run,</li>
+ * <li>scale.subjects, scale.groups, scale.memberships - the cardinalities of the data set,</li>
+ * <li>scale.zipfExponent - the exponent of the distribution of the group sizes,</li>
+ * <li>scale.extensionAttributes, scale.extensionDensity - the number of extension attributes and the probability
+ * of an object having one of them,</li>
+ * <li>scale.changes - the number of changes simulated before each synchronization,</li>
+ * <li>scale.pageSize, scale.iterations, scale.seed - the page size of the paged search, the number of measured
+ * iterations of each scenario and the seed of the generator,</li>
+ * <li>scale.report - the path of the report.</li>
+ * </ul>
+ */
+public class ScaleTestHarness extends CommonTestClass {
+    private static final Log LOG = Log.getLog(ScaleTestHarness.class);
+
+    private final String tablePrefix = property("tablePrefix", "scale");
+    private final boolean generate = Boolean.parseBoolean(property("generate", "true"));
+    private final int subjects = Integer.parseInt(property("subjects", "1000000"));
+    private final int groups = Integer.parseInt(property("groups", "100000"));
+    private final long memberships = Long.parseLong(property("memberships", "5000000"));
+    private final double zipfExponent = Double.parseDouble(property("zipfExponent", "1.0"));
+    private final int extensionAttributes = Integer.parseInt(property("extensionAttributes", "5"));
+    private final double extensionDensity = Double.parseDouble(property("extensionDensity", "0.3"));
+    private final int changes = Integer.parseInt(property("changes", "10000"));
+    private final int pageSize = Integer.parseInt(property("pageSize", "1000"));
+    private final int iterations = Integer.parseInt(property("iterations", "3"));
+    private final long seed = Long.parseLong(property("seed", "42"));
+    private final String report = property("report", "target/scale-report.json");
+
+    private final List<Map<String, Object>> scenarios = new ArrayList<>();
+    private ConnectorMetrics metrics;
+
+    public static void main(String[] args) throws Exception {
+
+        new ScaleTestHarness().run();
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("scale." + name, defaultValue);
+    }
+
+    private void run() throws Exception {
+
+        String[] extensionNames = new String[extensionAttributes];
+
+        for (int i = 0; i < extensionAttributes; i++) {
+
+            extensionNames[i] = ScaleDataGenerator.getExtensionAttributeName(i);
+        }
+
+        grouperConfiguration.setTablePrefix(tablePrefix);
+        grouperConfiguration.setExtendedGroupProperties(extensionNames);
+        grouperConfiguration.setExtendedSubjectProperties(extensionNames);
+        grouperConfiguration.validate();
+
+        Map<String, Object> dataset = new LinkedHashMap<>();
+        dataset.put("subjects", subjects);
+        dataset.put("groups", groups);
+        dataset.put("memberships", memberships);
+        dataset.put("zipfExponent", zipfExponent);
+        dataset.put("extensionAttributes", extensionAttributes);
+        dataset.put("extensionDensity", extensionDensity);
+        dataset.put("seed", seed);
+
+        GrouperConnection connection = new GrouperConnection(grouperConfiguration);
+
+        try {
+
+            ScaleDataGenerator generator = new ScaleDataGenerator(connection.getConnection(), tablePrefix, subjects,
+                    groups, memberships, zipfExponent, extensionAttributes, extensionDensity, seed);
+
+            if (generate) {
+
+                long startNanos = System.nanoTime();
+                dataset.put("memberships", generator.generate());
+                dataset.put("loadMillis", (System.nanoTime() - startNanos) / 1000000);
+            }
+
+            grouperConnector.init(grouperConfiguration);
+            metrics = ConnectorMetrics.getInstance(ObjectProcessing.getResourceKey(grouperConfiguration));
+
+            measureSearch("fullSearchGroups", ObjectProcessing.GROUP_NAME);
+            measureSearch("fullSearchSubjects", ObjectProcessing.SUBJECT_NAME);
+            measurePagedSearch("pagedSearchGroups", ObjectProcessing.GROUP_NAME);
+            measurePagedSearch("pagedSearchSubjects", ObjectProcessing.SUBJECT_NAME);
+            measureSync("syncGroups", ObjectProcessing.GROUP_NAME, generator);
+            measureSync("syncAll", ObjectClass.ALL_NAME, generator);
+        } finally {
+
+            connection.dispose();
+            cleanup();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", Instant.now().toString());
+        result.put("connectorVersion", ScaleTestHarness.class.getPackage().getImplementationVersion());
+        result.put("javaVersion", System.getProperty("java.version"));
+        result.put("dataset", dataset);
+        result.put("scenarios", scenarios);
+
+        Path path = Paths.get(report);
+
+        if (path.getParent() != null) {
+
+            Files.createDirectories(path.getParent());
+        }
+
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+
+            writeJson(writer, result);
+        }
+
+        LOG.info("Scale test report written to {0}", path.toAbsolutePath());
+    }
+
+    private void measureSearch(String name, String objectClassName) {
+
+        OperationOptions options = getDefaultOperationOptions(objectClassName, true);
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong objects = new AtomicLong();
+
+        metrics.reset();
+
+        for (int i = 0; i < iterations; i++) {
+
+            long startNanos = System.nanoTime();
+
+            grouperConnector.executeQuery(new ObjectClass(objectClassName), null, connectorObject -> {
+
+                objects.incrementAndGet();
+                return true;
+            }, options);
+
+            latency.record(System.nanoTime() - startNanos);
+        }
+
+        addScenario(name, objects.get(), latency, null);
+    }
+
+    private void measurePagedSearch(String name, String objectClassName) {
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram pageLatency = new LatencyHistogram();
+        AtomicLong objects = new AtomicLong();
+
+        metrics.reset();
+
+        for (int i = 0; i < iterations; i++) {
+
+            long startNanos = System.nanoTime();
+            String cookie = null;
+            int offset = 1;
+            PageHandler handler;
+
+            do {
+
+                OperationOptions options = getDefaultOperationOptions(objectClassName, true, cookie,
+                        cookie == null ? offset : null, pageSize);
+                handler = new PageHandler();
+                long pageStartNanos = System.nanoTime();
+
+                grouperConnector.executeQuery(new ObjectClass(objectClassName), null, handler, options);
+
+                pageLatency.record(System.nanoTime() - pageStartNanos);
+                objects.addAndGet(handler.handled);
+                cookie = handler.cookie;
+                offset = offset + pageSize;
+            } while (handler.handled >= pageSize);
+
+            latency.record(System.nanoTime() - startNanos);
+        }
+
+        addScenario(name, objects.get(), latency, pageLatency);
+    }
+
+    private void measureSync(String name, String objectClassName, ScaleDataGenerator generator) throws Exception {
+
+        ObjectClass objectClass = new ObjectClass(objectClassName);
+        OperationOptions options = getDefaultOperationOptions(objectClassName, true);
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong deltas = new AtomicLong();
+
+        metrics.reset();
+
+        for (int i = 0; i < iterations; i++) {
+
+            SyncToken token = grouperConnector.getLatestSyncToken(objectClass);
+            generator.simulateChanges(changes);
+
+            long startNanos = System.nanoTime();
+
+            grouperConnector.sync(objectClass, token, syncDelta -> {
+
+                deltas.incrementAndGet();
+                return true;
+            }, options);
+
+            latency.record(System.nanoTime() - startNanos);
+        }
+
+        Map<String, Object> scenario = addScenario(name, deltas.get(), latency, null);
+        scenario.put("simulatedChanges", changes);
+    }
+
+    private Map<String, Object> addScenario(String name, long objects, LatencyHistogram latency,
+                                            LatencyHistogram pageLatency) {
+
+        Map<String, Object> scenario = new LinkedHashMap<>();
+        scenario.put("name", name);
+        scenario.put("iterations", latency.getCount());
+        scenario.put("objects", objects / Math.max(1, latency.getCount()));
+        scenario.put("objectsPerSecond", latency.getTotalMicros() == 0 ? 0
+                : objects * 1000000 / latency.getTotalMicros());
+        scenario.put("latencyMicros", toMap(latency));
+
+        if (pageLatency != null) {
+
+            scenario.put("pageLatencyMicros", toMap(pageLatency));
+        }
+
+        scenario.put("statementsExecuted", metrics.getStatementsExecuted());
+        scenario.put("rowsFetched", metrics.getRowsFetched());
+        scenario.put("fanOutRatio", metrics.getFanOutRatio());
+
+        LOG.info("Scenario {0}: {1}", name, scenario);
+        scenarios.add(scenario);
+
+        return scenario;
+    }
+
+    private static Map<String, Object> toMap(LatencyHistogram histogram) {
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", histogram.getCount());
+        map.put("mean", histogram.getMeanMicros());
+        map.put("p50", histogram.getPercentileMicros(50));
+        map.put("p95", histogram.getPercentileMicros(95));
+        map.put("p99", histogram.getPercentileMicros(99));
+        map.put("max", histogram.getMaxMicros());
+
+        return map;
+    }
+
+    private static void writeJson(Writer writer, Object value) throws IOException {
+
+        if (value instanceof Map<?, ?>) {
+
+            writer.write('{');
+            boolean first = true;
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+
+                if (!first) {
+
+                    writer.write(',');
+                }
+
+                writeJson(writer, String.valueOf(entry.getKey()));
+                writer.write(':');
+                writeJson(writer, entry.getValue());
+                first = false;
+            }
+
+            writer.write('}');
+        } else if (value instanceof Collection<?>) {
+
+            writer.write('[');
+            boolean first = true;
+
+            for (Object item : (Collection<?>) value) {
+
+                if (!first) {
+
+                    writer.write(',');
+                }
+
+                writeJson(writer, item);
+                first = false;
+            }
+
+            writer.write(']');
+        } else if (value instanceof Number || value instanceof Boolean) {
+
+            writer.write(value.toString());
+        } else if (value == null) {
+
+            writer.write("null");
+        } else {
+
+            writer.write('"' + value.toString().replace("\\", "\\\\").replace("\"", "\\\"") + '"');
+        }
+    }
+
+    private static class PageHandler implements SearchResultsHandler {
+
+        private int handled = 0;
+        private String cookie;
+
+        @Override
+        public boolean handle(ConnectorObject connectorObject) {
+
+            handled++;
+            return true;
+        }
+
+        @Override
+        public void handleResult(SearchResult result) {
+
+            cookie = result != null ? result.getPagedResultsCookie() : null;
+        }
+    }
+}
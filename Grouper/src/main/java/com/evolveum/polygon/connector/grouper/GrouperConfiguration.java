@@ -29,6 +29,10 @@ public class GrouperConfiguration extends AbstractConfiguration implements State
 
     private static final Log LOG = Log.getLog(GrouperConfiguration.class);
 
+    public static final String COUNT_STRATEGY_EXACT = "exact";
+    public static final String COUNT_STRATEGY_ESTIMATED = "estimated";
+    public static final String COUNT_STRATEGY_NONE = "none";
+
     private Integer connectionValidTimeout = 10;
     private String databaseName;
     private GuardedString password;
@@ -43,6 +47,28 @@ public class GrouperConfiguration extends AbstractConfiguration implements State
     private Boolean excludeDeletedObjects = true;
     private Boolean enableIdBasedPaging = false;
     private Integer maxPageSize;
+    private Boolean pivotExtensionAttributes = false;
+    private Integer objectCacheSize;
+    private String countStrategy = COUNT_STRATEGY_EXACT;
+    private Boolean consistentSnapshot = false;
+    private Integer prefetchDepth;
+    private Boolean concurrentAllClassSync = false;
+    private Integer syncMaxDeltas;
+    private Integer syncMaxDuration;
+    private Long syncMaxBytes;
+    private Integer slowQueryThreshold;
+    private Boolean slowQueryExplain = false;
+    private Integer slowQueryAnalyzePercentage;
+    private Integer readRetryAttempts = 3;
+    private Integer readRetryBackoff = 1000;
+    private Integer maxConcurrentStatements;
+    private Boolean warmUpConnection = false;
+    private Integer searchQueryTimeout;
+    private Integer countQueryTimeout;
+    private Integer syncQueryTimeout;
+    private Integer syncTokenQueryTimeout;
+    private Integer pagedSearchSnapshotIdleTimeout = 300;
+    private Boolean requireSearchIndexes = false;
 
     @Override
     public void validate() {
@@ -90,6 +116,78 @@ public class GrouperConfiguration extends AbstractConfiguration implements State
             parameters.add("enableIdBasedPaging");
         }
 
+        if (countStrategy != null && !COUNT_STRATEGY_EXACT.equals(countStrategy)
+                && !COUNT_STRATEGY_ESTIMATED.equals(countStrategy) && !COUNT_STRATEGY_NONE.equals(countStrategy)) {
+
+            parameters.add("countStrategy");
+        }
+
+        if (syncMaxDeltas != null && syncMaxDeltas <= 0) {
+
+            parameters.add("syncMaxDeltas");
+        }
+
+        if (syncMaxDuration != null && syncMaxDuration <= 0) {
+
+            parameters.add("syncMaxDuration");
+        }
+
+        if (syncMaxBytes != null && syncMaxBytes <= 0) {
+
+            parameters.add("syncMaxBytes");
+        }
+
+        if (slowQueryThreshold != null && slowQueryThreshold < 0) {
+
+            parameters.add("slowQueryThreshold");
+        }
+
+        if (slowQueryAnalyzePercentage != null
+                && (slowQueryAnalyzePercentage < 0 || slowQueryAnalyzePercentage > 100)) {
+
+            parameters.add("slowQueryAnalyzePercentage");
+        }
+
+        if (readRetryAttempts != null && readRetryAttempts < 0) {
+
+            parameters.add("readRetryAttempts");
+        }
+
+        if (readRetryBackoff != null && readRetryBackoff <= 0) {
+
+            parameters.add("readRetryBackoff");
+        }
+
+        if (maxConcurrentStatements != null && maxConcurrentStatements <= 0) {
+
+            parameters.add("maxConcurrentStatements");
+        }
+
+        if (searchQueryTimeout != null && searchQueryTimeout < 0) {
+
+            parameters.add("searchQueryTimeout");
+        }
+
+        if (countQueryTimeout != null && countQueryTimeout < 0) {
+
+            parameters.add("countQueryTimeout");
+        }
+
+        if (syncQueryTimeout != null && syncQueryTimeout < 0) {
+
+            parameters.add("syncQueryTimeout");
+        }
+
+        if (syncTokenQueryTimeout != null && syncTokenQueryTimeout < 0) {
+
+            parameters.add("syncTokenQueryTimeout");
+        }
+
+        if (pagedSearchSnapshotIdleTimeout != null && pagedSearchSnapshotIdleTimeout < 0) {
+
+            parameters.add("pagedSearchSnapshotIdleTimeout");
+        }
+
         if (!parameters.isEmpty()) {
 
             throw new ConfigurationException(messagePart + parameters);
@@ -260,6 +358,248 @@ public class GrouperConfiguration extends AbstractConfiguration implements State
         this.attrsToHaveInAllSearch = attrsToHaveInAllSearch;
     }
 
+    @ConfigurationProperty(order = 16, displayMessageKey = "pivotExtensionAttributes.display",
+            helpMessageKey = "pivotExtensionAttributes.help")
+
+    public Boolean getPivotExtensionAttributes() {
+        return pivotExtensionAttributes;
+    }
+
+    public void setPivotExtensionAttributes(Boolean pivotExtensionAttributes) {
+        this.pivotExtensionAttributes = pivotExtensionAttributes;
+    }
+
+    @ConfigurationProperty(order = 17, displayMessageKey = "objectCacheSize.display",
+            helpMessageKey = "objectCacheSize.help")
+
+    public Integer getObjectCacheSize() {
+        return objectCacheSize;
+    }
+
+    public void setObjectCacheSize(Integer objectCacheSize) {
+        this.objectCacheSize = objectCacheSize;
+    }
+
+    @ConfigurationProperty(order = 18, displayMessageKey = "countStrategy.display",
+            helpMessageKey = "countStrategy.help")
+
+    public String getCountStrategy() {
+        return countStrategy;
+    }
+
+    public void setCountStrategy(String countStrategy) {
+        this.countStrategy = countStrategy;
+    }
+
+    @ConfigurationProperty(order = 19, displayMessageKey = "consistentSnapshot.display",
+            helpMessageKey = "consistentSnapshot.help")
+
+    public Boolean getConsistentSnapshot() {
+        return consistentSnapshot;
+    }
+
+    public void setConsistentSnapshot(Boolean consistentSnapshot) {
+        this.consistentSnapshot = consistentSnapshot;
+    }
+
+    @ConfigurationProperty(order = 20, displayMessageKey = "prefetchDepth.display",
+            helpMessageKey = "prefetchDepth.help")
+
+    public Integer getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    public void setPrefetchDepth(Integer prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    @ConfigurationProperty(order = 21, displayMessageKey = "concurrentAllClassSync.display",
+            helpMessageKey = "concurrentAllClassSync.help")
+
+    public Boolean getConcurrentAllClassSync() {
+        return concurrentAllClassSync;
+    }
+
+    public void setConcurrentAllClassSync(Boolean concurrentAllClassSync) {
+        this.concurrentAllClassSync = concurrentAllClassSync;
+    }
+
+    @ConfigurationProperty(order = 22, displayMessageKey = "syncMaxDeltas.display",
+            helpMessageKey = "syncMaxDeltas.help")
+
+    public Integer getSyncMaxDeltas() {
+        return syncMaxDeltas;
+    }
+
+    public void setSyncMaxDeltas(Integer syncMaxDeltas) {
+        this.syncMaxDeltas = syncMaxDeltas;
+    }
+
+    @ConfigurationProperty(order = 23, displayMessageKey = "syncMaxDuration.display",
+            helpMessageKey = "syncMaxDuration.help")
+
+    public Integer getSyncMaxDuration() {
+        return syncMaxDuration;
+    }
+
+    public void setSyncMaxDuration(Integer syncMaxDuration) {
+        this.syncMaxDuration = syncMaxDuration;
+    }
+
+    @ConfigurationProperty(order = 24, displayMessageKey = "syncMaxBytes.display",
+            helpMessageKey = "syncMaxBytes.help")
+
+    public Long getSyncMaxBytes() {
+        return syncMaxBytes;
+    }
+
+    public void setSyncMaxBytes(Long syncMaxBytes) {
+        this.syncMaxBytes = syncMaxBytes;
+    }
+
+    @ConfigurationProperty(order = 25, displayMessageKey = "slowQueryThreshold.display",
+            helpMessageKey = "slowQueryThreshold.help")
+
+    public Integer getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    public void setSlowQueryThreshold(Integer slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    @ConfigurationProperty(order = 26, displayMessageKey = "slowQueryExplain.display",
+            helpMessageKey = "slowQueryExplain.help")
+
+    public Boolean getSlowQueryExplain() {
+        return slowQueryExplain;
+    }
+
+    public void setSlowQueryExplain(Boolean slowQueryExplain) {
+        this.slowQueryExplain = slowQueryExplain;
+    }
+
+    @ConfigurationProperty(order = 27, displayMessageKey = "slowQueryAnalyzePercentage.display",
+            helpMessageKey = "slowQueryAnalyzePercentage.help")
+
+    public Integer getSlowQueryAnalyzePercentage() {
+        return slowQueryAnalyzePercentage;
+    }
+
+    public void setSlowQueryAnalyzePercentage(Integer slowQueryAnalyzePercentage) {
+        this.slowQueryAnalyzePercentage = slowQueryAnalyzePercentage;
+    }
+
+    @ConfigurationProperty(order = 28, displayMessageKey = "readRetryAttempts.display",
+            helpMessageKey = "readRetryAttempts.help")
+
+    public Integer getReadRetryAttempts() {
+        return readRetryAttempts;
+    }
+
+    public void setReadRetryAttempts(Integer readRetryAttempts) {
+        this.readRetryAttempts = readRetryAttempts;
+    }
+
+    @ConfigurationProperty(order = 29, displayMessageKey = "readRetryBackoff.display",
+            helpMessageKey = "readRetryBackoff.help")
+
+    public Integer getReadRetryBackoff() {
+        return readRetryBackoff;
+    }
+
+    public void setReadRetryBackoff(Integer readRetryBackoff) {
+        this.readRetryBackoff = readRetryBackoff;
+    }
+
+    @ConfigurationProperty(order = 30, displayMessageKey = "maxConcurrentStatements.display",
+            helpMessageKey = "maxConcurrentStatements.help")
+
+    public Integer getMaxConcurrentStatements() {
+        return maxConcurrentStatements;
+    }
+
+    public void setMaxConcurrentStatements(Integer maxConcurrentStatements) {
+        this.maxConcurrentStatements = maxConcurrentStatements;
+    }
+
+    @ConfigurationProperty(order = 31, displayMessageKey = "warmUpConnection.display",
+            helpMessageKey = "warmUpConnection.help")
+
+    public Boolean getWarmUpConnection() {
+        return warmUpConnection;
+    }
+
+    public void setWarmUpConnection(Boolean warmUpConnection) {
+        this.warmUpConnection = warmUpConnection;
+    }
+
+    @ConfigurationProperty(order = 32, displayMessageKey = "searchQueryTimeout.display",
+            helpMessageKey = "searchQueryTimeout.help")
+
+    public Integer getSearchQueryTimeout() {
+        return searchQueryTimeout;
+    }
+
+    public void setSearchQueryTimeout(Integer searchQueryTimeout) {
+        this.searchQueryTimeout = searchQueryTimeout;
+    }
+
+    @ConfigurationProperty(order = 33, displayMessageKey = "countQueryTimeout.display",
+            helpMessageKey = "countQueryTimeout.help")
+
+    public Integer getCountQueryTimeout() {
+        return countQueryTimeout;
+    }
+
+    public void setCountQueryTimeout(Integer countQueryTimeout) {
+        this.countQueryTimeout = countQueryTimeout;
+    }
+
+    @ConfigurationProperty(order = 34, displayMessageKey = "syncQueryTimeout.display",
+            helpMessageKey = "syncQueryTimeout.help")
+
+    public Integer getSyncQueryTimeout() {
+        return syncQueryTimeout;
+    }
+
+    public void setSyncQueryTimeout(Integer syncQueryTimeout) {
+        this.syncQueryTimeout = syncQueryTimeout;
+    }
+
+    @ConfigurationProperty(order = 35, displayMessageKey = "syncTokenQueryTimeout.display",
+            helpMessageKey = "syncTokenQueryTimeout.help")
+
+    public Integer getSyncTokenQueryTimeout() {
+        return syncTokenQueryTimeout;
+    }
+
+    public void setSyncTokenQueryTimeout(Integer syncTokenQueryTimeout) {
+        this.syncTokenQueryTimeout = syncTokenQueryTimeout;
+    }
+
+    @ConfigurationProperty(order = 36, displayMessageKey = "pagedSearchSnapshotIdleTimeout.display",
+            helpMessageKey = "pagedSearchSnapshotIdleTimeout.help")
+
+    public Integer getPagedSearchSnapshotIdleTimeout() {
+        return pagedSearchSnapshotIdleTimeout;
+    }
+
+    public void setPagedSearchSnapshotIdleTimeout(Integer pagedSearchSnapshotIdleTimeout) {
+        this.pagedSearchSnapshotIdleTimeout = pagedSearchSnapshotIdleTimeout;
+    }
+
+    @ConfigurationProperty(order = 37, displayMessageKey = "requireSearchIndexes.display",
+            helpMessageKey = "requireSearchIndexes.help")
+
+    public Boolean getRequireSearchIndexes() {
+        return requireSearchIndexes;
+    }
+
+    public void setRequireSearchIndexes(Boolean requireSearchIndexes) {
+        this.requireSearchIndexes = requireSearchIndexes;
+    }
+
     @Override
     public void release() {
 
@@ -276,5 +616,27 @@ public class GrouperConfiguration extends AbstractConfiguration implements State
         excludeDeletedObjects = true;
         enableIdBasedPaging = false;
         maxPageSize = null;
+        pivotExtensionAttributes = false;
+        objectCacheSize = null;
+        countStrategy = COUNT_STRATEGY_EXACT;
+        consistentSnapshot = false;
+        prefetchDepth = null;
+        concurrentAllClassSync = false;
+        syncMaxDeltas = null;
+        syncMaxDuration = null;
+        syncMaxBytes = null;
+        slowQueryThreshold = null;
+        slowQueryExplain = false;
+        slowQueryAnalyzePercentage = null;
+        readRetryAttempts = 3;
+        readRetryBackoff = 1000;
+        maxConcurrentStatements = null;
+        warmUpConnection = false;
+        searchQueryTimeout = null;
+        countQueryTimeout = null;
+        syncQueryTimeout = null;
+        syncTokenQueryTimeout = null;
+        pagedSearchSnapshotIdleTimeout = 300;
+        requireSearchIndexes = false;
     }
 }
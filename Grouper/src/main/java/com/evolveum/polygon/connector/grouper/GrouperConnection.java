@@ -17,6 +17,8 @@
 package com.evolveum.polygon.connector.grouper;
 
 import com.evolveum.polygon.common.GuardedStringAccessor;
+import com.evolveum.polygon.connector.grouper.util.ConnectorMetrics;
+import com.evolveum.polygon.connector.grouper.util.ObjectProcessing;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.common.security.GuardedString;
 import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
@@ -26,17 +28,30 @@ import org.postgresql.ds.PGConnectionPoolDataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Connection to the resource database. The connection is opened on its first use, so that connector instances which
+ * never query the database, e.g. instances used only for the schema, do not open any. The connection may be also
+ * opened in advance in the background, see {@link #warmUp()}.
+ */
 public class GrouperConnection {
     private static final Log LOG = Log.getLog(GrouperConnection.class);
+    private static final ExecutorService WARM_UP_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "grouper-connection-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private GrouperConfiguration configuration;
     private Connection connection;
+    private CompletableFuture<Connection> warmUp;
 
     public GrouperConnection(GrouperConfiguration configuration) {
         this.configuration = configuration;
-
-        connection = initialize(configuration);
     }
 
     private static Connection initialize(GrouperConfiguration configuration) {
@@ -61,12 +76,13 @@ public class GrouperConnection {
         try {
             LOG.ok("About to acquire connection to the server on host:{0} and port:{1}, with the database name: {2}",host ,port ,databaseName);
             connection = dataSource.getConnection();
+            ConnectorMetrics.getInstance(ObjectProcessing.getResourceKey(configuration)).recordConnectionOpened();
 
             LOG.ok("Connection acquired");
         } catch (SQLException e) {
 
             throw new ConnectionFailedException("Database connection could not be established by the connector: "
-                    + e.getLocalizedMessage());
+                    + e.getLocalizedMessage(), e);
         }
 
         return connection;
@@ -76,18 +92,20 @@ public class GrouperConnection {
         LOG.ok("Testing connection via psql validation method");
         try {
 
-            if (!connection.isValid(configuration.getConnectionValidTimeout())) {
+            if (!getConnection().isValid(configuration.getConnectionValidTimeout())) {
 
                 throw new ConnectionFailedException("The connection validation method evaluated the connection as " +
                         "not valid.");
             }
 
-            Statement statement = null;
-            statement = connection.createStatement();
+            try (Statement statement = getConnection().createStatement()) {
+
+                statement.setQueryTimeout(configuration.getConnectionValidTimeout());
 
-            if (!statement.execute("SELECT 1;")) {
+                if (!statement.execute("SELECT 1;")) {
 
-                throw new ConnectionFailedException("Connection not valid per SQL statement validation.");
+                    throw new ConnectionFailedException("Connection not valid per SQL statement validation.");
+                }
             }
 
         } catch (SQLException e) {
@@ -96,12 +114,26 @@ public class GrouperConnection {
         }
     }
 
-    public void dispose() {
+    public synchronized void dispose() {
+        ConnectorMetrics metrics = configuration != null
+                ? ConnectorMetrics.getInstance(ObjectProcessing.getResourceKey(configuration)) : null;
         configuration = null;
 
+        if (warmUp != null) {
+
+            // The connection being warmed up is closed as soon as it is opened
+            warmUp.thenAccept(warmedUp -> closeWarmedUp(warmedUp, metrics));
+            warmUp = null;
+        }
+
         try {
             if (connection != null && !connection.isClosed()) {
                 connection.close();
+
+                if (metrics != null) {
+
+                    metrics.recordConnectionClosed();
+                }
             }
         } catch (SQLException e) {
             throw new ConnectorException("Exception while closing a connection to the resource database: "
@@ -109,7 +141,98 @@ public class GrouperConnection {
         }
     }
 
-    public Connection getConnection() {
+    /**
+     * Returns the connection, opening it on the first use. If the connection is being warmed up, waits until it is
+     * opened.
+     */
+    public synchronized Connection getConnection() {
+
+        if (connection == null && warmUp != null) {
+
+            CompletableFuture<Connection> pending = warmUp;
+            warmUp = null;
+
+            try {
+
+                connection = pending.join();
+            } catch (CompletionException e) {
+
+                LOG.warn("The connection could not be opened in the background, opening it again: {0}",
+                        e.getCause() != null ? e.getCause().getLocalizedMessage() : e.getLocalizedMessage());
+            }
+        }
+
+        if (connection == null) {
+
+            connection = initialize(configuration);
+        }
+
+        return connection;
+    }
+
+    /**
+     * Starts opening the connection in the background, so that the first operation does not wait for it.
+     */
+    public synchronized void warmUp() {
+
+        if (connection == null && warmUp == null) {
+
+            GrouperConfiguration warmUpConfiguration = configuration;
+            warmUp = CompletableFuture.supplyAsync(() -> initialize(warmUpConfiguration), WARM_UP_EXECUTOR);
+        }
+    }
+
+    /**
+     * Returns true if the connection was opened and closed since. A connection not opened yet is not closed.
+     */
+    public synchronized boolean isClosed() throws SQLException {
+        return connection != null && connection.isClosed();
+    }
+
+    private static void closeWarmedUp(Connection warmedUp, ConnectorMetrics metrics) {
+
+        try {
+
+            warmedUp.close();
+
+            if (metrics != null) {
+
+                metrics.recordConnectionClosed();
+            }
+        } catch (SQLException e) {
+
+            LOG.ok("Exception while closing the connection opened in the background: {0}", e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Replaces the connection, e.g. after it was lost by a failover of the database. The previous connection is
+     * closed, failures on closing it are ignored.
+     */
+    public synchronized Connection reconnect() {
+        LOG.info("Replacing the connection to the resource database by a new one");
+
+        try {
+
+            if (connection != null && !connection.isClosed()) {
+
+                connection.close();
+            }
+        } catch (SQLException e) {
+
+            LOG.ok("Exception while closing the replaced connection: {0}", e.getLocalizedMessage());
+        }
+
+        if (connection != null) {
+
+            ConnectorMetrics.getInstance(ObjectProcessing.getResourceKey(configuration)).recordConnectionClosed();
+
+            // If the new connection can not be opened yet, e.g. during a failover, the next attempt opens it
+            connection = null;
+        }
+
+        connection = initialize(configuration);
+
         return connection;
     }
 }
\ No newline at end of file
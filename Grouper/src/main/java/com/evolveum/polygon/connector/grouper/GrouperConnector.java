@@ -19,6 +19,7 @@ package com.evolveum.polygon.connector.grouper;
 import com.evolveum.polygon.connector.grouper.util.*;
 import org.identityconnectors.common.CollectionUtil;
 import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConfigurationException;
 import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
 import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
@@ -29,10 +30,17 @@ import org.identityconnectors.framework.spi.Configuration;
 import org.identityconnectors.framework.spi.Connector;
 import org.identityconnectors.framework.spi.ConnectorClass;
 import org.identityconnectors.framework.spi.PoolableConnector;
+import org.identityconnectors.framework.spi.SearchResultsHandler;
 import org.identityconnectors.framework.spi.operations.*;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * midPoint connector for InCommon Grouper
@@ -56,6 +64,26 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
      */
     private static final Log LOG = Log.getLog(GrouperConnector.class);
 
+    /**
+     * Names of the extension attributes discovered in the extension attribute tables, shared by all connector
+     * instances. See {@link ExtensionSchemaCache}.
+     */
+    private static final ExtensionSchemaCache EXTENSION_SCHEMA_CACHE = new ExtensionSchemaCache();
+
+    private static final SchemaTranslator SCHEMA_TRANSLATOR = new SchemaTranslator();
+
+    private static final String ALL_CLASS_SYNC_THREAD_NAME = "grouper-all-class-sync";
+
+    /**
+     * Closes the paged search snapshots of all connector instances, once no page was requested for the idle timeout.
+     */
+    private static final ScheduledExecutorService SNAPSHOT_IDLE_TIMER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "grouper-paged-search-snapshot-idle");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     /**
      * Instance of {@link Configuration}. Initialized via callback at
      * {@link GrouperConnector#init(Configuration)}
@@ -64,11 +92,35 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
 
     /**
      * Instance of {@link GrouperConnection}. This class handles the connection to the grouper repository.
-     * The class created an instance of {@link java.sql.Connection} which is consumed by the underlying connector
-     * methods.
+     * The class creates an instance of {@link java.sql.Connection} on its first use, which is consumed by the
+     * underlying connector methods.
      */
     private GrouperConnection grouperConnection;
 
+    /**
+     * The statements executed by the operations of the instance at the moment, cancelled when the instance is
+     * disposed.
+     */
+    private final ActiveStatements activeStatements = new ActiveStatements(null);
+
+    /**
+     * Snapshot transaction of a paged search with a consistent snapshot. The transaction is kept open between the
+     * pages of the search and closed after its last page, when the handler stops the search, by the idle timer when
+     * no page was requested for the idle timeout, or by any other operation. Guarded by
+     * {@link #pagedSearchSnapshotLock}, as the idle timer closes it on its own thread.
+     */
+    private SnapshotTransaction pagedSearchSnapshot;
+
+    private final Object pagedSearchSnapshotLock = new Object();
+
+    /**
+     * Scheduled close of the held paged search snapshot, cancelled when the next page is requested. A close which
+     * already started to run is ignored if its generation is not the current one.
+     */
+    private ScheduledFuture<?> pagedSearchSnapshotIdleClose;
+
+    private long pagedSearchSnapshotGeneration = 0;
+
     /**
      * Accessor for {@link Configuration}.
      */
@@ -87,6 +139,11 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
         this.configuration = (GrouperConfiguration) configuration;
         this.grouperConnection = new GrouperConnection(this.configuration);
 
+        if (this.configuration.getWarmUpConnection() != null && this.configuration.getWarmUpConnection()) {
+
+            grouperConnection.warmUp();
+        }
+
     }
 
     /**
@@ -94,6 +151,8 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
      */
     @Override
     public void dispose() {
+        activeStatements.cancelAll();
+        closePagedSearchSnapshot();
         configuration = null;
         if (grouperConnection != null) {
             grouperConnection.dispose();
@@ -104,14 +163,14 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
     /**
      * Generated the schema for both object classes supported by the connector. The schema is partially hardcoded
      * and partially might be dynamically computed based on extension attributes. Method uses a utility class instance
-     * of {@link SchemaTranslator} which handles the specifics.
+     * of {@link SchemaTranslator} which handles the specifics. Generated schemas are cached and shared by all
+     * connector instances with the same schema relevant configuration.
      */
     @Override
     public Schema schema() {
         LOG.info("Evaluating the schema operation");
-        SchemaTranslator translator = new SchemaTranslator();
 
-        return translator.generateSchema(configuration);
+        return SCHEMA_TRANSLATOR.generateSchema(configuration);
 
     }
 
@@ -154,20 +213,39 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
         }
 
 
-        if (objectClass.is(ObjectProcessing.SUBJECT_NAME)) {
-            SubjectProcessing subjectProcessing = new SubjectProcessing(configuration);
+        long startNanos = System.nanoTime();
+        SnapshotTransaction snapshotTransaction = beginSearchSnapshotTransaction(operationOptions);
+        String snapshotId = workerSnapshotId(snapshotTransaction);
+        PageCountingHandler countingHandler = new PageCountingHandler(resultsHandler);
+
+        try {
 
-            subjectProcessing.executeQuery(filter, resultsHandler, operationOptions, grouperConnection.getConnection());
+            if (objectClass.is(ObjectProcessing.SUBJECT_NAME)) {
+                SubjectProcessing subjectProcessing = new SubjectProcessing(configuration);
+                subjectProcessing.setParentStatements(activeStatements);
+                subjectProcessing.setSnapshotId(snapshotId);
+                subjectProcessing.setReconnect(grouperConnection::reconnect);
 
-        }
+                subjectProcessing.executeQuery(filter, countingHandler, operationOptions,
+                        grouperConnection.getConnection());
 
+            }
 
-        if (objectClass.is(ObjectProcessing.GROUP_NAME)) {
-            GroupProcessing groupProcessing = new GroupProcessing(configuration);
 
+            if (objectClass.is(ObjectProcessing.GROUP_NAME)) {
+                GroupProcessing groupProcessing = new GroupProcessing(configuration);
+                groupProcessing.setParentStatements(activeStatements);
+                groupProcessing.setSnapshotId(snapshotId);
+                groupProcessing.setReconnect(grouperConnection::reconnect);
 
-            groupProcessing.executeQuery(filter, resultsHandler, operationOptions, grouperConnection.getConnection());
+                groupProcessing.executeQuery(filter, countingHandler, operationOptions,
+                        grouperConnection.getConnection());
 
+            }
+        } finally {
+
+            endSearchSnapshotTransaction(snapshotTransaction, countingHandler);
+            getMetrics().recordLatency(ConnectorMetrics.OPERATION_SEARCH, startNanos);
         }
 
         LOG.ok("Finished evaluating the execute query operation.");
@@ -182,11 +260,287 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
         LOG.info("Executing test operation.");
         configuration.validate();
         grouperConnection.test();
+        reportSearchIndexes();
         grouperConnection.dispose();
 
         LOG.ok("Test OK");
     }
 
+    /**
+     * Logs the indexes which support case insensitive and substring filters. Missing 'lower()' expression indexes
+     * needed by case insensitive equality filters fail the test if the search indexes are required, otherwise they
+     * are logged as a warning and the related searches fall back to sequential scans.
+     */
+    private void reportSearchIndexes() {
+
+        List<String> missingIndexes = new ArrayList<>();
+
+        Map<ObjectClass, ObjectProcessing> processings = Map.of(
+                GroupProcessing.O_CLASS, new GroupProcessing(configuration),
+                SubjectProcessing.O_CLASS, new SubjectProcessing(configuration));
+
+        for (ObjectClass oClass : processings.keySet()) {
+            ObjectProcessing processing = processings.get(oClass);
+
+            try {
+                List<String> indexes = processing.fetchSearchIndexes(grouperConnection.getConnection());
+
+                if (indexes.isEmpty()) {
+
+                    LOG.info("No functional, trigram or pattern indexes present for the tables of the object class "
+                            + "{0}. Case insensitive and substring filters will use sequential scans.",
+                            oClass);
+                }
+
+                indexes.forEach(index -> LOG.info("Index usable by case insensitive and substring filters: {0}",
+                        index));
+
+                missingIndexes.addAll(processing.fetchMissingSearchIndexes(grouperConnection.getConnection()));
+            } catch (SQLException e) {
+
+                LOG.warn("Indexes could not be evaluated: {0}", e.getLocalizedMessage());
+            }
+        }
+
+        if (missingIndexes.isEmpty()) {
+
+            return;
+        }
+
+        String message = "Indexes needed by case insensitive equality filters are missing, such filters will use "
+                + "sequential scans. The indexes can be created by: " + String.join("; ", missingIndexes);
+
+        if (configuration.getRequireSearchIndexes() != null && configuration.getRequireSearchIndexes()) {
+
+            throw new ConfigurationException(message);
+        }
+
+        LOG.warn(message);
+    }
+
+    /**
+     * Starts a snapshot transaction for a search or synchronization if the consistent snapshot is configured,
+     * otherwise returns null and every query runs in its own transaction.
+     */
+    private SnapshotTransaction beginSnapshotTransaction() {
+
+        closePagedSearchSnapshot();
+
+        if (configuration.getConsistentSnapshot() == null || !configuration.getConsistentSnapshot()) {
+
+            return null;
+        }
+
+        return SnapshotTransaction.begin(grouperConnection.getConnection());
+    }
+
+    /**
+     * Starts or continues the snapshot transaction of a search. The snapshot of a paged search is exported and handed
+     * over in the paged results cookie. A page requested with such a cookie continues the open transaction, or joins
+     * the snapshot if the transaction is open on another connection. If the snapshot does not exist anymore, e.g.
+     * after a restart, the search continues from the cookie position in a new snapshot.
+     */
+    private SnapshotTransaction beginSearchSnapshotTransaction(OperationOptions operationOptions) {
+
+        if (operationOptions == null || operationOptions.getPageSize() == null) {
+
+            return beginSnapshotTransaction();
+        }
+
+        if (configuration.getConsistentSnapshot() == null || !configuration.getConsistentSnapshot()) {
+
+            closePagedSearchSnapshot();
+            return null;
+        }
+
+        cancelPagedSearchSnapshotIdleClose();
+
+        String cookie = operationOptions.getPagedResultsCookie();
+        String snapshotId = cookie != null && !cookie.isEmpty() ? PagingCookie.parse(cookie).getSnapshotId() : null;
+
+        if (pagedSearchSnapshot != null && snapshotId != null
+                && snapshotId.equals(pagedSearchSnapshot.getSnapshotId())) {
+
+            return pagedSearchSnapshot;
+        }
+
+        closePagedSearchSnapshot();
+
+        if (snapshotId != null) {
+
+            try {
+
+                pagedSearchSnapshot = SnapshotTransaction.join(grouperConnection.getConnection(), snapshotId);
+                return pagedSearchSnapshot;
+            } catch (ConnectorException e) {
+
+                LOG.warn("The snapshot {0} of the paged search is not available anymore, continuing in a new " +
+                        "snapshot: {1}", snapshotId, e.getLocalizedMessage());
+            }
+        }
+
+        pagedSearchSnapshot = SnapshotTransaction.begin(grouperConnection.getConnection());
+        pagedSearchSnapshot.exportSnapshot();
+
+        return pagedSearchSnapshot;
+    }
+
+    /**
+     * Ends the snapshot transaction of a search. The transaction of a paged search is kept open unless the page was
+     * the last one or the handler stopped the search.
+     */
+    private void endSearchSnapshotTransaction(SnapshotTransaction snapshotTransaction,
+                                              PageCountingHandler countingHandler) {
+
+        if (snapshotTransaction == null) {
+
+            return;
+        }
+
+        if (snapshotTransaction != pagedSearchSnapshot) {
+
+            snapshotTransaction.close();
+        } else if (countingHandler.isStopped() || countingHandler.isLastPage()) {
+
+            closePagedSearchSnapshot();
+        } else {
+
+            schedulePagedSearchSnapshotIdleClose();
+        }
+    }
+
+    /**
+     * Schedules the close of the held paged search snapshot after the idle timeout, so that an abandoned or
+     * interrupted paged search does not keep the transaction open, holding back the cleanup of the database.
+     */
+    private void schedulePagedSearchSnapshotIdleClose() {
+
+        Integer idleTimeout = configuration.getPagedSearchSnapshotIdleTimeout();
+
+        if (idleTimeout == null || idleTimeout <= 0) {
+
+            return;
+        }
+
+        synchronized (pagedSearchSnapshotLock) {
+
+            long generation = ++pagedSearchSnapshotGeneration;
+
+            pagedSearchSnapshotIdleClose = SNAPSHOT_IDLE_TIMER.schedule(() -> {
+
+                synchronized (pagedSearchSnapshotLock) {
+
+                    if (generation == pagedSearchSnapshotGeneration && pagedSearchSnapshot != null) {
+
+                        LOG.info("Closing the snapshot {0} of a paged search, no page was requested for {1} " +
+                                "seconds", pagedSearchSnapshot.getSnapshotId(), idleTimeout);
+                        closePagedSearchSnapshot();
+                    }
+                }
+            }, idleTimeout, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Cancels the scheduled close of the held paged search snapshot, before the snapshot is used again.
+     */
+    private void cancelPagedSearchSnapshotIdleClose() {
+
+        synchronized (pagedSearchSnapshotLock) {
+
+            pagedSearchSnapshotGeneration++;
+
+            if (pagedSearchSnapshotIdleClose != null) {
+
+                pagedSearchSnapshotIdleClose.cancel(false);
+                pagedSearchSnapshotIdleClose = null;
+            }
+        }
+    }
+
+    /**
+     * Identifier of the snapshot read by the operation, which separate connections prefetching pages have to join.
+     * The snapshot is exported only if prefetching is configured or the search is paged.
+     */
+    private String workerSnapshotId(SnapshotTransaction snapshotTransaction) {
+
+        if (snapshotTransaction == null) {
+
+            return null;
+        }
+
+        Integer prefetchDepth = configuration.getPrefetchDepth();
+
+        return prefetchDepth != null && prefetchDepth > 0 ? snapshotTransaction.exportSnapshot() :
+                snapshotTransaction.getSnapshotId();
+    }
+
+    private void closePagedSearchSnapshot() {
+
+        synchronized (pagedSearchSnapshotLock) {
+
+            cancelPagedSearchSnapshotIdleClose();
+
+            if (pagedSearchSnapshot != null) {
+
+                pagedSearchSnapshot.close();
+                pagedSearchSnapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Handler observing the objects and the result of a page, so that the end of a paged search can be recognized.
+     * The page is the last one if no object was handled, or the search result reports no remaining results or no
+     * cookie.
+     */
+    private static class PageCountingHandler implements SearchResultsHandler {
+
+        private final ResultsHandler handler;
+        private int handled = 0;
+        private boolean stopped = false;
+        private SearchResult searchResult;
+
+        private PageCountingHandler(ResultsHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean handle(ConnectorObject connectorObject) {
+
+            handled++;
+
+            if (!handler.handle(connectorObject)) {
+
+                stopped = true;
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public void handleResult(SearchResult searchResult) {
+
+            this.searchResult = searchResult;
+
+            if (handler instanceof SearchResultsHandler) {
+
+                ((SearchResultsHandler) handler).handleResult(searchResult);
+            }
+        }
+
+        private boolean isStopped() {
+            return stopped;
+        }
+
+        private boolean isLastPage() {
+
+            return handled == 0 || searchResult == null || searchResult.getPagedResultsCookie() == null
+                    || searchResult.getRemainingPagedResults() == 0;
+        }
+    }
+
     @Override
     public void testPartialConfiguration() {
         // Test method would be equal to 'test()', so left empty so there is no additional overhead.
@@ -232,14 +586,15 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
             suggestions.put("enableIdBasedPaging", SuggestedValuesBuilder.buildOpen(false));
         }
 
+        Set<String> groupExtensionAttributes = fetchExtensionAttributes(GroupProcessing.O_CLASS);
+        Set<String> subjectExtensionAttributes = fetchExtensionAttributes(SubjectProcessing.O_CLASS);
+
         suggestions.put("extendedGroupProperties", SuggestedValuesBuilder.buildOpen(
-                fetchExtensionAttributes(GroupProcessing.O_CLASS) != null ?
-                        fetchExtensionAttributes(GroupProcessing.O_CLASS).toArray(new String[0]) : null
+                groupExtensionAttributes != null ? groupExtensionAttributes.toArray(new String[0]) : null
         ));
 
         suggestions.put("extendedSubjectProperties", SuggestedValuesBuilder.buildOpen(
-                fetchExtensionAttributes(SubjectProcessing.O_CLASS) != null ?
-                        fetchExtensionAttributes(SubjectProcessing.O_CLASS).toArray(new String[0]) : null
+                subjectExtensionAttributes != null ? subjectExtensionAttributes.toArray(new String[0]) : null
         ));
 
         return suggestions;
@@ -248,40 +603,31 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
     private Set<String> fetchExtensionAttributes(ObjectClass oClass) {
         LOG.info("Fetching extension attributes for the object class {0}", oClass);
 
-        if (oClass.equals(GroupProcessing.O_CLASS)) {
-
-            GroupProcessing processing = new GroupProcessing(configuration);
-
-            try {
-                return processing.fetchExtensionSchema(grouperConnection.getConnection());
+        ObjectProcessing processing;
 
-            } catch (SQLException e) {
+        if (oClass.equals(GroupProcessing.O_CLASS)) {
 
-                String errMessage = "Exception occurred while fetching the extension attributes for dynamic schema " +
-                        "evaluation. The object class being handled: " + oClass;
-
-                throw new ExceptionHandler().evaluateAndHandleException(e, true, false, errMessage);
-            }
+            processing = new GroupProcessing(configuration);
 
         } else if (oClass.equals(SubjectProcessing.O_CLASS)) {
 
-            SubjectProcessing processing = new SubjectProcessing(configuration);
-
-            try {
-                return processing.fetchExtensionSchema(grouperConnection.getConnection());
-
-            } catch (SQLException e) {
-                String errMessage = "Exception occurred while fetching the extension attributes for dynamic schema " +
-                        "evaluation. The object class being handled: " + oClass;
-
-                throw new ExceptionHandler().evaluateAndHandleException(e, true, false, errMessage);
-            }
+            processing = new SubjectProcessing(configuration);
 
         } else {
 
             throw new ConnectorException("Unexpected object class used in extension attribute evaluation.");
         }
 
+        try {
+            return processing.fetchExtensionSchema(grouperConnection.getConnection(), EXTENSION_SCHEMA_CACHE);
+
+        } catch (SQLException e) {
+
+            String errMessage = "Exception occurred while fetching the extension attributes for dynamic schema " +
+                    "evaluation. The object class being handled: " + oClass;
+
+            throw new ExceptionHandler().evaluateAndHandleException(e, true, false, errMessage);
+        }
     }
 
     /**
@@ -300,183 +646,230 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
         LOG.ok("Evaluation of SYNC op method regarding the object class {0} with the following options: {1}", objectClass
                 , operationOptions);
 
-        if (syncToken == null) {
+        long startNanos = System.nanoTime();
 
-            LOG.ok("Empty token, fetching latest sync token");
-            syncToken = getLatestSyncToken(objectClass);
+        try (SnapshotTransaction snapshotTransaction = beginSnapshotTransaction()) {
 
-        }
+            if (syncToken == null) {
 
+                LOG.ok("Empty token, fetching latest sync token");
+                syncToken = getLatestSyncToken(objectClass, snapshotTransaction);
 
-        if (objectClass.is(ObjectProcessing.GROUP_NAME)) {
-            GroupProcessing groupProcessing = new GroupProcessing(configuration);
-            groupProcessing.sync(syncToken, syncResultsHandler, operationOptions, grouperConnection.getConnection());
-
-        } else if (objectClass.is(ObjectProcessing.SUBJECT_NAME)) {
-            SubjectProcessing subjectProcessing = new SubjectProcessing(configuration);
-            subjectProcessing.sync(syncToken, syncResultsHandler, operationOptions, grouperConnection.getConnection());
-
-        } else if (objectClass.is(ObjectClass.ALL_NAME)) {
-
-            SubjectProcessing subjectProcessing = new SubjectProcessing(configuration);
-            GroupProcessing groupProcessing = new GroupProcessing(configuration);
-            LinkedHashMap<String, GrouperObject> subjectObjectLinkedHashMap = new LinkedHashMap<>();
-            LinkedHashMap<String, GrouperObject> groupObjectLinkedHashMap = new LinkedHashMap<>();
-            Integer maxPageSize = configuration.getMaxPageSize();
-
-
-            QueryBuilder subjectQuery = subjectProcessing.syncQuery(syncToken, operationOptions,
-                    grouperConnection.getConnection(), true);
-            QueryBuilder groupQuery = groupProcessing.syncQuery(syncToken, operationOptions,
-                    grouperConnection.getConnection(), true);
-
-            Integer subjectCount = subjectQuery.getTotalCount();
-            Integer groupCount = groupQuery.getTotalCount();
-            if (maxPageSize != null) {
-                if (subjectCount != null) {
+            }
 
-                    for (int i = 0; subjectCount >= i; i = i + maxPageSize) {
+            if (syncToken != null && syncToken.getValue() instanceof Long) {
 
-                        subjectQuery.setPageSize(maxPageSize);
-                        subjectQuery.setPageOffset(i + 1);
+                getMetrics().recordSyncLag((Long) syncToken.getValue());
+            }
 
-                        subjectObjectLinkedHashMap.putAll(subjectProcessing.
-                                sync(syncToken, operationOptions, grouperConnection.getConnection(), subjectQuery,
-                                        true));
 
+            if (objectClass.is(ObjectProcessing.GROUP_NAME)) {
+                GroupProcessing groupProcessing = new GroupProcessing(configuration);
+                groupProcessing.setParentStatements(activeStatements);
+                groupProcessing.setSnapshotId(workerSnapshotId(snapshotTransaction));
+                groupProcessing.setReconnect(grouperConnection::reconnect);
+                groupProcessing.sync(syncToken, syncResultsHandler, operationOptions,
+                        grouperConnection.getConnection());
+
+            } else if (objectClass.is(ObjectProcessing.SUBJECT_NAME)) {
+                SubjectProcessing subjectProcessing = new SubjectProcessing(configuration);
+                subjectProcessing.setParentStatements(activeStatements);
+                subjectProcessing.setSnapshotId(workerSnapshotId(snapshotTransaction));
+                subjectProcessing.setReconnect(grouperConnection::reconnect);
+                subjectProcessing.sync(syncToken, syncResultsHandler, operationOptions,
+                        grouperConnection.getConnection());
+
+            } else if (objectClass.is(ObjectClass.ALL_NAME)) {
+
+                SubjectProcessing subjectProcessing = new SubjectProcessing(configuration);
+                subjectProcessing.setParentStatements(activeStatements);
+                GroupProcessing groupProcessing = new GroupProcessing(configuration);
+                groupProcessing.setParentStatements(activeStatements);
+                LinkedHashMap<String, GrouperObject> subjectObjectLinkedHashMap;
+                LinkedHashMap<String, GrouperObject> groupObjectLinkedHashMap;
+                SyncToken allClassSyncToken = syncToken;
+                SyncBudget syncBudget = new SyncBudget(configuration);
+
+                groupProcessing.setReconnect(grouperConnection::reconnect);
+
+                if (isConcurrentAllClassSync()) {
+
+                    try (ConnectionWorker worker = new ConnectionWorker(configuration,
+                            snapshotTransaction != null ? snapshotTransaction.exportSnapshot() : null,
+                            ALL_CLASS_SYNC_THREAD_NAME)) {
+
+                        subjectProcessing.setReconnect(worker::reconnect);
+                        Future<LinkedHashMap<String, GrouperObject>> subjects = worker.submit(connection ->
+                                fetchAllClassSyncObjects(subjectProcessing, allClassSyncToken, operationOptions,
+                                        connection, syncBudget));
+
+                        groupObjectLinkedHashMap = fetchAllClassSyncObjects(groupProcessing, syncToken,
+                                operationOptions, grouperConnection.getConnection(), syncBudget);
+                        subjectObjectLinkedHashMap = ConnectionWorker.await(subjects);
                     }
+                } else {
+
+                    subjectProcessing.setReconnect(grouperConnection::reconnect);
+                    subjectObjectLinkedHashMap = fetchAllClassSyncObjects(subjectProcessing, syncToken,
+                            operationOptions, grouperConnection.getConnection(), syncBudget);
+                    groupObjectLinkedHashMap = fetchAllClassSyncObjects(groupProcessing, syncToken,
+                            operationOptions, grouperConnection.getConnection(), syncBudget);
                 }
 
-                if (groupCount != null) {
 
-                    for (int i = 0; groupCount >= i; i = i + maxPageSize) {
+                LinkedHashMap<String, GrouperObject> mergedMap = new LinkedHashMap<>();
 
-                        groupQuery.setPageSize(maxPageSize);
-                        groupQuery.setPageOffset(i + 1);
+                Iterator<String> groupIterator = groupObjectLinkedHashMap.keySet().iterator();
+                Iterator<String> subjectIterator = subjectObjectLinkedHashMap.keySet().iterator();
 
-                        groupObjectLinkedHashMap.putAll(groupProcessing.
-                                sync(syncToken, operationOptions, grouperConnection.getConnection(), groupQuery,
-                                        true));
-                    }
-                }
+                GrouperObject grouperGroup = null;
+                Long groupTimestamp = null;
 
-            } else {
+                while (subjectIterator.hasNext()) {
+                    GrouperObject so = subjectObjectLinkedHashMap.get(subjectIterator.next());
+                    Long subjectTimestamp = so.latestTimestamp;
 
-                subjectObjectLinkedHashMap = subjectProcessing.
-                        sync(syncToken, operationOptions, grouperConnection.getConnection(), subjectQuery,
-                                true);
+                    while (groupIterator.hasNext()) {
 
-                groupObjectLinkedHashMap = groupProcessing.
-                        sync(syncToken, operationOptions, grouperConnection.getConnection(), groupQuery,
-                                true);
-            }
+                        if (grouperGroup == null) {
+                            grouperGroup = groupObjectLinkedHashMap.get(groupIterator.next());
+                        }
+                        if (groupTimestamp == null) {
+                            groupTimestamp = grouperGroup.latestTimestamp;
+                        }
 
+                        if (groupTimestamp.compareTo(subjectTimestamp) <= 0) {
+                            mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
 
-            LinkedHashMap<String, GrouperObject> mergedMap = new LinkedHashMap<>();
+                            if (!groupIterator.hasNext()) {
+                                grouperGroup = null;
 
-            Iterator<String> groupIterator = groupObjectLinkedHashMap.keySet().iterator();
-            Iterator<String> subjectIterator = subjectObjectLinkedHashMap.keySet().iterator();
+                            } else {
+                                grouperGroup = groupObjectLinkedHashMap.get(groupIterator.next());
+                                groupTimestamp = grouperGroup.latestTimestamp;
 
-            GrouperObject grouperGroup = null;
-            Long groupTimestamp = null;
+                            }
+                        } else {
+                            mergedMap.put(so.getIdentifier(), so);
 
-            while (subjectIterator.hasNext()) {
-                GrouperObject so = subjectObjectLinkedHashMap.get(subjectIterator.next());
-                Long subjectTimestamp = so.latestTimestamp;
+                            break;
+                        }
+                    }
+                    if (!groupIterator.hasNext()) {
 
-                while (groupIterator.hasNext()) {
+                        if (grouperGroup != null) {
 
-                    if (grouperGroup == null) {
-                        grouperGroup = groupObjectLinkedHashMap.get(groupIterator.next());
-                    }
-                    if (groupTimestamp == null) {
-                        groupTimestamp = grouperGroup.latestTimestamp;
+                            if (groupTimestamp.compareTo(subjectTimestamp) <= 0) {
+                                mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
+                                mergedMap.put(so.getIdentifier(), so);
+                                grouperGroup = null;
+                            } else {
+                                mergedMap.put(so.getIdentifier(), so);
+                            }
+                        } else {
+                            mergedMap.put(so.getIdentifier(), so);
+                        }
                     }
+                }
 
-                    if (groupTimestamp.compareTo(subjectTimestamp) <= 0) {
-                        mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
+                if (groupIterator.hasNext()) {
 
-                        if (!groupIterator.hasNext()) {
-                            grouperGroup = null;
+                    while (groupIterator.hasNext()) {
 
-                        } else {
+                        if (grouperGroup != null) {
+                            mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
                             grouperGroup = groupObjectLinkedHashMap.get(groupIterator.next());
-                            groupTimestamp = grouperGroup.latestTimestamp;
 
+                            if (!groupIterator.hasNext()) {
+                                mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
+                            }
+                        } else {
+                            grouperGroup = groupObjectLinkedHashMap.get(groupIterator.next());
+                            mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
                         }
-                    } else {
-                        mergedMap.put(so.getIdentifier(), so);
 
-                        break;
                     }
-                }
-                if (!groupIterator.hasNext()) {
+                } else {
 
                     if (grouperGroup != null) {
 
-                        if (groupTimestamp.compareTo(subjectTimestamp) <= 0) {
-                            mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
-                            mergedMap.put(so.getIdentifier(), so);
-                            grouperGroup = null;
-                        } else {
-                            mergedMap.put(so.getIdentifier(), so);
-                        }
-                    } else {
-                        mergedMap.put(so.getIdentifier(), so);
+                        mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
                     }
                 }
-            }
 
-            if (groupIterator.hasNext()) {
+                for (String id : mergedMap.keySet()) {
 
-                while (groupIterator.hasNext()) {
+                    GrouperObject go = mergedMap.get(id);
 
-                    if (grouperGroup != null) {
-                        mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
-                        grouperGroup = groupObjectLinkedHashMap.get(groupIterator.next());
+                    if (go.getObjectClass().is(ObjectProcessing.GROUP_NAME)) {
 
-                        if (!groupIterator.hasNext()) {
-                            mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
+                        if (!groupProcessing.sync(syncResultsHandler, GroupProcessing.O_CLASS, go, syncBudget)) {
+
+                            break;
                         }
-                    } else {
-                        grouperGroup = groupObjectLinkedHashMap.get(groupIterator.next());
-                        mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
-                    }
+                    } else if (go.getObjectClass().is(SubjectProcessing.SUBJECT_NAME)) {
+
+                        if (!subjectProcessing.sync(syncResultsHandler, SubjectProcessing.O_CLASS, go, syncBudget)) {
 
+                            break;
+                        }
+                    }
                 }
-            } else {
 
-                if (grouperGroup != null) {
+                syncBudget.handleResult(syncResultsHandler);
 
-                    mergedMap.put(grouperGroup.getIdentifier(), grouperGroup);
-                }
-            }
+            } else {
 
-            for (String id : mergedMap.keySet()) {
+                throw new UnsupportedOperationException("Attribute of type" + objectClass + "is not supported. " +
+                        "Only " + GroupProcessing.GROUP_NAME + " and " + ObjectProcessing.SUBJECT_NAME + " objectclass " +
+                        "is supported for SyncOp currently.");
+            }
+        } finally {
 
-                GrouperObject go = mergedMap.get(id);
+            getMetrics().recordLatency(ConnectorMetrics.OPERATION_SYNC, startNanos);
+        }
+    }
 
-                if (go.getObjectClass().is(ObjectProcessing.GROUP_NAME)) {
+    /**
+     * Fetches the changed objects of a single object class for the synchronization of all object classes, in pages of
+     * the maximal page size if needed. The objects are ordered by their latest time stamp. No further pages are
+     * fetched once the sync budget has enough objects to deliver. A page failing on a lost connection is fetched
+     * again, see {@link ReadRetry}.
+     */
+    private LinkedHashMap<String, GrouperObject> fetchAllClassSyncObjects(ObjectProcessing processing,
+                                                                        SyncToken syncToken,
+                                                                        OperationOptions operationOptions,
+                                                                        Connection connection,
+                                                                        SyncBudget syncBudget) {
 
-                    if (!groupProcessing.sync(syncResultsHandler, GroupProcessing.O_CLASS, go)) {
+        LinkedHashMap<String, GrouperObject> objects = new LinkedHashMap<>();
+        Integer maxPageSize = configuration.getMaxPageSize();
+        ReadRetry readRetry = processing.newReadRetry(connection);
 
-                        break;
-                    }
-                } else if (go.getObjectClass().is(SubjectProcessing.SUBJECT_NAME)) {
+        QueryBuilder query = readRetry.execute(queryConnection -> processing.syncQuery(syncToken, operationOptions,
+                queryConnection, true));
+        if (maxPageSize != null && processing.exceedsMaxPageSize(operationOptions)) {
 
-                    if (!subjectProcessing.sync(syncResultsHandler, SubjectProcessing.O_CLASS, go)) {
+            processing.executeInPages(query, maxPageSize, () -> {
 
-                        break;
-                    }
-                }
-            }
+                LinkedHashMap<String, GrouperObject> page = readRetry.execute(pageConnection ->
+                        processing.sync(syncToken, operationOptions, pageConnection, query, true));
+                objects.putAll(page);
 
+                return !page.isEmpty() && !syncBudget.isFetchComplete(objects);
+            });
         } else {
 
-            throw new UnsupportedOperationException("Attribute of type" + objectClass + "is not supported. " +
-                    "Only " + GroupProcessing.GROUP_NAME + " and " + ObjectProcessing.SUBJECT_NAME + " objectclass " +
-                    "is supported for SyncOp currently.");
+            objects.putAll(readRetry.execute(syncConnection -> processing.sync(syncToken, operationOptions,
+                    syncConnection, query, true)));
         }
+
+        return objects;
+    }
+
+    private boolean isConcurrentAllClassSync() {
+
+        return configuration.getConcurrentAllClassSync() != null && configuration.getConcurrentAllClassSync();
     }
 
     /**
@@ -486,11 +879,32 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
      */
     @Override
     public SyncToken getLatestSyncToken(ObjectClass objectClass) {
+        long startNanos = System.nanoTime();
+
+        try {
+
+            return getLatestSyncToken(objectClass, null);
+        } finally {
+
+            getMetrics().recordLatency(ConnectorMetrics.OPERATION_LATEST_SYNC_TOKEN, startNanos);
+        }
+    }
+
+    private ConnectorMetrics getMetrics() {
+
+        return ConnectorMetrics.getInstance(ObjectProcessing.getResourceKey(configuration));
+    }
+
+    /**
+     * Fetches the latest sync token within the snapshot transaction of a synchronization, if any.
+     */
+    private SyncToken getLatestSyncToken(ObjectClass objectClass, SnapshotTransaction snapshotTransaction) {
 
 
         if (objectClass.is(ObjectProcessing.GROUP_NAME)) {
 
             GroupProcessing groupProcessing = new GroupProcessing(configuration);
+            groupProcessing.setParentStatements(activeStatements);
             Long groupToken = groupProcessing.getLatestSyncToken(grouperConnection.getConnection());
 
             if (groupToken != null) {
@@ -504,6 +918,7 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
         } else if (objectClass.is(ObjectProcessing.SUBJECT_NAME)) {
 
             SubjectProcessing subjectProcessing = new SubjectProcessing(configuration);
+            subjectProcessing.setParentStatements(activeStatements);
             Long subjectToken = subjectProcessing.getLatestSyncToken(grouperConnection.getConnection());
 
             if (subjectToken != null) {
@@ -517,11 +932,29 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
         } else if (objectClass.is(ObjectClass.ALL_NAME)) {
 
             GroupProcessing groupProcessing = new GroupProcessing(configuration);
+            groupProcessing.setParentStatements(activeStatements);
             SubjectProcessing subjectProcessing = new SubjectProcessing(configuration);
+            subjectProcessing.setParentStatements(activeStatements);
 
-            Long subjectToken = subjectProcessing.getLatestSyncToken(grouperConnection.getConnection());
+            Long subjectToken;
+            Long groupToken;
 
-            Long groupToken = groupProcessing.getLatestSyncToken(grouperConnection.getConnection());
+            if (isConcurrentAllClassSync()) {
+
+                try (ConnectionWorker worker = new ConnectionWorker(configuration,
+                        snapshotTransaction != null ? snapshotTransaction.exportSnapshot() : null,
+                        ALL_CLASS_SYNC_THREAD_NAME)) {
+
+                    Future<Long> subjectTokenFuture = worker.submit(subjectProcessing::getLatestSyncToken);
+
+                    groupToken = groupProcessing.getLatestSyncToken(grouperConnection.getConnection());
+                    subjectToken = ConnectionWorker.await(subjectTokenFuture);
+                }
+            } else {
+
+                subjectToken = subjectProcessing.getLatestSyncToken(grouperConnection.getConnection());
+                groupToken = groupProcessing.getLatestSyncToken(grouperConnection.getConnection());
+            }
 
             if (subjectToken != null) {
 
@@ -554,9 +987,9 @@ public class GrouperConnector implements PoolableConnector, SchemaOp, TestOp, Se
     public void checkAlive() {
 
         try {
-            if (grouperConnection !=null && !grouperConnection.getConnection().isClosed()){
+            if (grouperConnection !=null && !grouperConnection.isClosed()){
                 return;
-            } else if (grouperConnection.getConnection().isClosed()) {
+            } else if (grouperConnection != null) {
 
                 throw new ConnectionFailedException("Database connection has been closed");
             } else {
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper;
+
+import com.evolveum.polygon.connector.grouper.util.ExceptionHandler;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+
+/**
+ * A 'REPEATABLE READ READ ONLY' transaction, in which all the queries of a multi-page search or synchronization
+ * read the same snapshot of the database. The snapshot can be exported, so that other connections read the
+ * identical snapshot.
+ * <p>
+ * Closing the transaction ends it and restores the previous state of the connection.
+ */
+public class SnapshotTransaction implements AutoCloseable {
+    private static final Log LOG = Log.getLog(SnapshotTransaction.class);
+    private static final Pattern SNAPSHOT_ID_PATTERN = Pattern.compile("[0-9A-Fa-f]+(-[0-9A-Fa-f]+)+");
+
+    private final Connection connection;
+    private final boolean autoCommit;
+    private final int transactionIsolation;
+    private final boolean readOnly;
+    private String snapshotId;
+
+    private SnapshotTransaction(Connection connection) throws SQLException {
+        this.connection = connection;
+
+        autoCommit = connection.getAutoCommit();
+        transactionIsolation = connection.getTransactionIsolation();
+        readOnly = connection.isReadOnly();
+
+        connection.setAutoCommit(false);
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        connection.setReadOnly(true);
+    }
+
+    /**
+     * Starts a snapshot transaction on the connection.
+     */
+    public static SnapshotTransaction begin(Connection connection) {
+
+        try {
+
+            LOG.ok("Starting a repeatable read, read only transaction");
+            return new SnapshotTransaction(connection);
+        } catch (SQLException e) {
+
+            throw new ExceptionHandler().evaluateAndHandleException(e, true, false,
+                    "Exception occurred while starting the snapshot transaction");
+        }
+    }
+
+    /**
+     * Starts a snapshot transaction on the connection, reading the snapshot exported by another transaction. The
+     * exporting transaction has to be still open.
+     */
+    public static SnapshotTransaction join(Connection connection, String snapshotId) {
+
+        if (snapshotId == null || !SNAPSHOT_ID_PATTERN.matcher(snapshotId).matches()) {
+
+            throw new ConnectorException("Invalid snapshot identifier: " + snapshotId);
+        }
+
+        SnapshotTransaction transaction = begin(connection);
+
+        try (Statement statement = connection.createStatement()) {
+
+            LOG.ok("Joining the exported snapshot {0}", snapshotId);
+            statement.execute("SET TRANSACTION SNAPSHOT '" + snapshotId + "'");
+            transaction.snapshotId = snapshotId;
+
+        } catch (SQLException e) {
+
+            transaction.close();
+
+            throw new ExceptionHandler().evaluateAndHandleException(e, true, false,
+                    "Exception occurred while joining the snapshot " + snapshotId);
+        }
+
+        return transaction;
+    }
+
+    /**
+     * Exports the snapshot of the transaction, so that it can be joined by other connections. The snapshot can be
+     * joined only while this transaction is open.
+     */
+    public String exportSnapshot() {
+
+        if (snapshotId != null) {
+
+            return snapshotId;
+        }
+
+        try (PreparedStatement prepareStatement = connection.prepareStatement("SELECT pg_export_snapshot()");
+             ResultSet result = prepareStatement.executeQuery()) {
+
+            if (result.next()) {
+
+                snapshotId = result.getString(1);
+            }
+
+        } catch (SQLException e) {
+
+            throw new ExceptionHandler().evaluateAndHandleException(e, true, false,
+                    "Exception occurred while exporting the transaction snapshot");
+        }
+
+        LOG.ok("Exported transaction snapshot {0}", snapshotId);
+
+        return snapshotId;
+    }
+
+    public String getSnapshotId() {
+        return snapshotId;
+    }
+
+    @Override
+    public void close() {
+
+        try {
+
+            // Nothing was written, commit only ends the transaction
+            connection.commit();
+        } catch (SQLException e) {
+
+            LOG.warn("Exception while ending the snapshot transaction: {0}", e.getLocalizedMessage());
+        } finally {
+
+            try {
+
+                connection.setReadOnly(readOnly);
+                connection.setTransactionIsolation(transactionIsolation);
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+
+                LOG.warn("Exception while restoring the connection state: {0}", e.getLocalizedMessage());
+            }
+        }
+    }
+}
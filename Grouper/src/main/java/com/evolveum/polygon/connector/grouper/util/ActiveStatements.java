@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import org.identityconnectors.common.logging.Log;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The statements of a processing which are executed at the moment, including the statements executed on the
+ * connection of a page prefetch. The statements may be cancelled from another thread, so that the database stops
+ * executing a query whose rows are no longer needed.
+ * <p>
+ * The statements of a processing are registered also in the parent statements of the connector instance, so that
+ * all the statements of the instance can be cancelled when it is disposed.
+ */
+public class ActiveStatements {
+    private static final Log LOG = Log.getLog(ActiveStatements.class);
+
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+    private final ActiveStatements parent;
+
+    public ActiveStatements(ActiveStatements parent) {
+        this.parent = parent;
+    }
+
+    public void add(Statement statement) {
+        statements.add(statement);
+
+        if (parent != null) {
+
+            parent.add(statement);
+        }
+    }
+
+    public void remove(Statement statement) {
+        statements.remove(statement);
+
+        if (parent != null) {
+
+            parent.remove(statement);
+        }
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Requests the cancellation of all the active statements. The cancelled statements fail with the SQLSTATE
+     * 57014 in the threads executing them.
+     */
+    public void cancelAll() {
+
+        for (Statement statement : statements) {
+
+            try {
+
+                LOG.info("Cancelling an active statement");
+                statement.cancel();
+            } catch (SQLException e) {
+
+                LOG.warn("Exception while cancelling an active statement: {0}", e.getLocalizedMessage());
+            }
+        }
+    }
+}
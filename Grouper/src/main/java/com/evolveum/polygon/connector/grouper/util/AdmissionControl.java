@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of statements executed concurrently against a database by all connector instances in the JVM.
+ * One instance exists per host, port and database. Statements over the limit wait in a first come first served
+ * queue, the time spent waiting is recorded as the 'admissionWait' latency of the {@link ConnectorMetrics}.
+ * <p>
+ * Lookups of single objects by their Uid are short and bypass the admission control, see
+ * {@link ObjectProcessing#executeStatement}.
+ */
+public class AdmissionControl {
+    private static final Log LOG = Log.getLog(AdmissionControl.class);
+    private static final Map<String, AdmissionControl> INSTANCES = new ConcurrentHashMap<>();
+
+    private final int maxConcurrentStatements;
+    private final Semaphore semaphore;
+
+    private AdmissionControl(int maxConcurrentStatements) {
+        this.maxConcurrentStatements = maxConcurrentStatements;
+        this.semaphore = new Semaphore(maxConcurrentStatements, true);
+    }
+
+    /**
+     * Returns the admission control of the database, or null if the number of concurrent statements is not limited.
+     * If the limit was changed, a new admission control replaces the previous one, the statements admitted by the
+     * previous one release their permits to it.
+     */
+    public static AdmissionControl getInstance(GrouperConfiguration configuration) {
+        Integer maxConcurrentStatements = configuration.getMaxConcurrentStatements();
+
+        if (maxConcurrentStatements == null) {
+
+            return null;
+        }
+
+        String databaseKey = configuration.getHost() + ":" + configuration.getPort() + "/"
+                + configuration.getDatabaseName();
+
+        return INSTANCES.compute(databaseKey, (key, current) -> {
+
+            if (current != null && current.maxConcurrentStatements == maxConcurrentStatements) {
+
+                return current;
+            }
+
+            LOG.info("Limiting the concurrent statements against the database {0} to {1}", key,
+                    maxConcurrentStatements);
+
+            return new AdmissionControl(maxConcurrentStatements);
+        });
+    }
+
+    /**
+     * Waits until the statement may be executed. The returned permit has to be closed once the statement returns.
+     */
+    public Permit acquire(ConnectorMetrics metrics) {
+        long startNanos = System.nanoTime();
+
+        try {
+
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new ConnectorException("Interrupted while waiting for the admission of a statement", e);
+        }
+
+        metrics.recordLatency(ConnectorMetrics.PHASE_ADMISSION_WAIT, startNanos);
+
+        return new Permit(semaphore);
+    }
+
+    public int getQueueLength() {
+        return semaphore.getQueueLength();
+    }
+
+    public int getAvailablePermits() {
+        return semaphore.availablePermits();
+    }
+
+    public static class Permit implements AutoCloseable {
+
+        private final Semaphore semaphore;
+        private boolean released = false;
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+
+            if (!released) {
+
+                released = true;
+                semaphore.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.GrouperConnection;
+import com.evolveum.polygon.connector.grouper.SnapshotTransaction;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+import java.sql.Connection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * A worker thread owning a separate connection to the resource database. The tasks submitted to the worker are
+ * executed one after another on that connection, concurrently with the caller. If a snapshot identifier is given,
+ * the connection joins the exported snapshot, so that the worker reads the same data as the caller.
+ * <p>
+ * The connection is opened by the first task and closed when the worker is closed, after the already running task
+ * finishes.
+ */
+public class ConnectionWorker implements AutoCloseable {
+    private static final Log LOG = Log.getLog(ConnectionWorker.class);
+
+    private final GrouperConfiguration configuration;
+    private final String snapshotId;
+    private final ExecutorService executor;
+    private GrouperConnection workerConnection;
+
+    public ConnectionWorker(GrouperConfiguration configuration, String snapshotId, String name) {
+        this.configuration = configuration;
+        this.snapshotId = snapshotId;
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public <T> Future<T> submit(Function<Connection, T> task) {
+
+        return executor.submit(() -> task.apply(getWorkerConnection()));
+    }
+
+    /**
+     * Waits for the result of a submitted task. Runtime exceptions thrown by the task are rethrown as they are.
+     */
+    public static <T> T await(Future<T> future) {
+
+        try {
+
+            return future.get();
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new ConnectorException("Interrupted while waiting for a task on a separate connection", e);
+        } catch (ExecutionException e) {
+
+            if (e.getCause() instanceof RuntimeException) {
+
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new ConnectorException("Exception occurred while executing a task on a separate connection",
+                    e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+
+        executor.submit(this::closeWorkerConnection);
+        executor.shutdown();
+    }
+
+    /**
+     * Called only by the worker thread.
+     */
+    private Connection getWorkerConnection() {
+
+        if (workerConnection == null) {
+
+            LOG.ok("Opening a separate connection for the worker {0}", Thread.currentThread().getName());
+            workerConnection = new GrouperConnection(configuration);
+
+            if (snapshotId != null) {
+
+                SnapshotTransaction.join(workerConnection.getConnection(), snapshotId);
+            }
+        }
+
+        return workerConnection.getConnection();
+    }
+
+    /**
+     * Replaces the connection of the worker by a new one, e.g. after it was lost by a failover of the database.
+     * Called only by the worker thread, i.e. by a read retried within a submitted task, see {@link ReadRetry}.
+     */
+    public Connection reconnect() {
+
+        if (workerConnection == null) {
+
+            return getWorkerConnection();
+        }
+
+        return workerConnection.reconnect();
+    }
+
+    /**
+     * Called only by the worker thread, closing the connection also ends a joined snapshot transaction.
+     */
+    private void closeWorkerConnection() {
+
+        if (workerConnection != null) {
+
+            workerConnection.dispose();
+            workerConnection = null;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import org.identityconnectors.common.logging.Log;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation and statement metrics of the connector. The metrics are collected with lock free counters and
+ * histograms, so they are always enabled.
+ * <p>
+ * One instance exists per resource (database and table prefix) and is shared by all connector instances configured
+ * against it. Each instance is registered as an MBean named
+ * 'com.evolveum.polygon.connector.grouper:type=ConnectorMetrics,resource=...'.
+ */
+public class ConnectorMetrics implements ConnectorMetricsMBean {
+
+    private static final Log LOG = Log.getLog(ConnectorMetrics.class);
+    private static final Map<String, ConnectorMetrics> INSTANCES = new ConcurrentHashMap<>();
+    private static final String OBJECT_NAME_PREFIX = "com.evolveum.polygon.connector.grouper:type=ConnectorMetrics,"
+            + "resource=";
+
+    public static final String OPERATION_SEARCH = "search";
+    public static final String OPERATION_SYNC = "sync";
+    public static final String OPERATION_LATEST_SYNC_TOKEN = "latestSyncToken";
+    public static final String PHASE_QUERY_BUILD = "queryBuild";
+    public static final String PHASE_EXECUTE = "execute";
+    public static final String PHASE_FIRST_ROW = "firstRow";
+    public static final String PHASE_DRAIN = "drain";
+    public static final String PHASE_HANDLER = "handler";
+    public static final String PHASE_COUNT_QUERY = "countQuery";
+    public static final String PHASE_ADMISSION_WAIT = "admissionWait";
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final LongAdder statementsExecuted = new LongAdder();
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder objectsEmitted = new LongAdder();
+    private final LongAdder pagesFetched = new LongAdder();
+    private final LongAdder countQueries = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder readRetries = new LongAdder();
+    private final AtomicLong syncLagMillis = new AtomicLong();
+    private final SlowQueryLog slowQueryLog = new SlowQueryLog();
+
+    private ConnectorMetrics() {
+    }
+
+    public static ConnectorMetrics getInstance(String resourceKey) {
+
+        return INSTANCES.computeIfAbsent(resourceKey, key -> {
+
+            ConnectorMetrics metrics = new ConnectorMetrics();
+            register(key, metrics);
+
+            return metrics;
+        });
+    }
+
+    private static void register(String resourceKey, ConnectorMetrics metrics) {
+
+        try {
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(resourceKey));
+
+            if (!server.isRegistered(name)) {
+
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException | SecurityException e) {
+
+            LOG.warn("Connector metrics of the resource {0} could not be registered as an MBean: {1}", resourceKey,
+                    e.getLocalizedMessage());
+        }
+    }
+
+    public void recordLatency(String name, long startNanos) {
+
+        histograms.computeIfAbsent(name, key -> new LatencyHistogram()).record(System.nanoTime() - startNanos);
+    }
+
+    public LatencyHistogram getHistogram(String name) {
+
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public void recordStatement(int rows) {
+
+        statementsExecuted.increment();
+        rowsFetched.add(rows);
+    }
+
+    public void recordCountQuery(long startNanos) {
+
+        countQueries.increment();
+        recordLatency(PHASE_COUNT_QUERY, startNanos);
+    }
+
+    public void recordObjectEmitted() {
+        objectsEmitted.increment();
+    }
+
+    public void recordPage() {
+        pagesFetched.increment();
+    }
+
+    public void recordSyncLag(long tokenTimestamp) {
+        syncLagMillis.set(System.currentTimeMillis() - tokenTimestamp);
+    }
+
+    public void recordConnectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    public void recordConnectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    public void recordReadRetry() {
+        readRetries.increment();
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    @Override
+    public String[] getLatencyHistograms() {
+
+        return new TreeMap<>(histograms).entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public long getStatementsExecuted() {
+        return statementsExecuted.sum();
+    }
+
+    @Override
+    public long getRowsFetched() {
+        return rowsFetched.sum();
+    }
+
+    @Override
+    public long getObjectsEmitted() {
+        return objectsEmitted.sum();
+    }
+
+    /**
+     * The number of rows fetched per emitted object, i.e. the fan out of the joined membership and extension
+     * attribute rows.
+     */
+    @Override
+    public double getFanOutRatio() {
+        long emitted = objectsEmitted.sum();
+
+        return emitted == 0 ? 0 : (double) rowsFetched.sum() / emitted;
+    }
+
+    @Override
+    public long getPagesFetched() {
+        return pagesFetched.sum();
+    }
+
+    @Override
+    public long getCountQueries() {
+        return countQueries.sum();
+    }
+
+    @Override
+    public long getSyncLagMillis() {
+        return syncLagMillis.get();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    @Override
+    public long getOpenConnections() {
+        return connectionsOpened.sum() - connectionsClosed.sum();
+    }
+
+    @Override
+    public long getReadRetries() {
+        return readRetries.sum();
+    }
+
+    @Override
+    public String[] getSlowQueries() {
+        return slowQueryLog.toArray();
+    }
+
+    @Override
+    public void clearSlowQueries() {
+        slowQueryLog.clear();
+    }
+
+    @Override
+    public void reset() {
+
+        histograms.values().forEach(LatencyHistogram::reset);
+        statementsExecuted.reset();
+        rowsFetched.reset();
+        objectsEmitted.reset();
+        pagesFetched.reset();
+        countQueries.reset();
+        readRetries.reset();
+        syncLagMillis.set(0);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+/**
+ * Management interface of the {@link ConnectorMetrics} of a resource.
+ */
+public interface ConnectorMetricsMBean {
+
+    String[] getLatencyHistograms();
+
+    long getStatementsExecuted();
+
+    long getRowsFetched();
+
+    long getObjectsEmitted();
+
+    double getFanOutRatio();
+
+    long getPagesFetched();
+
+    long getCountQueries();
+
+    long getSyncLagMillis();
+
+    long getConnectionsOpened();
+
+    long getConnectionsClosed();
+
+    long getOpenConnections();
+
+    long getReadRetries();
+
+    String[] getSlowQueries();
+
+    void clearSlowQueries();
+
+    void reset();
+}
@@ -20,12 +20,39 @@ import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.*;
 
 import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
 import java.util.List;
 
 public class ExceptionHandler {
 
     private static final Log LOG = Log.getLog(ExceptionHandler.class);
 
+    private static final List<String> TRANSIENT_SQL_STATES = List.of("08000", "08001", "08003", "08004", "08006",
+            "53300", "57P01", "57P02", "57P03", "57P05", "40001", "40P01");
+
+    /**
+     * Returns true if the exception, or one of its causes, is an SQL exception caused by a lost connection or another
+     * transient failure, so that a failed read may be repeated on a new connection.
+     */
+    public static boolean isTransient(Throwable e) {
+
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+
+                return true;
+            }
+
+            if (cause instanceof SQLException && TRANSIENT_SQL_STATES.contains(((SQLException) cause).getSQLState())) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public RuntimeException evaluateAndHandleException(Exception e, Boolean logErr, Boolean wrap,
                                                        String message) {
 
@@ -46,7 +73,7 @@ public class ExceptionHandler {
         List<String> invalidAttributeValue = List.of("HV024");
 
         List<String> configurationException = List.of("53400");
-        List<String> connectionTimeOut = List.of("57P05", "25P03");
+        List<String> connectionTimeOut = List.of("57P05", "25P03", "57014");
         List<String> permissionDenied = List.of("38004", "2F004");
 
         if (sqlState != null) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import org.identityconnectors.common.logging.Log;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the extension attribute names present in the extension attribute tables. An entry is served without
+ * any database interaction until its time to live expires. After that the entry is revalidated against the latest
+ * 'last_modified' value of the extension table, and the names are fetched again only if the table has changed.
+ */
+public class ExtensionSchemaCache {
+
+    private static final Log LOG = Log.getLog(ExtensionSchemaCache.class);
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public ExtensionSchemaCache() {
+
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    public ExtensionSchemaCache(long ttlMillis) {
+
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the cached attribute names if the entry has not expired yet, null otherwise.
+     */
+    public Set<String> getIfFresh(String key) {
+        Entry entry = entries.get(key);
+
+        if (entry != null && System.currentTimeMillis() < entry.expiresAt) {
+
+            LOG.ok("Extension attribute names for {0} served from cache.", key);
+            return entry.names;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the cached attribute names if they were fetched at the same latest modification time stamp,
+     * prolonging the entry. Returns null if the entry is missing or the table was modified since.
+     */
+    public Set<String> revalidate(String key, Long lastModified) {
+        Entry entry = entries.get(key);
+
+        if (entry != null && Objects.equals(entry.lastModified, lastModified)) {
+
+            LOG.ok("Extension attribute names for {0} revalidated, table not modified since {1}.", key,
+                    lastModified);
+            entries.put(key, new Entry(entry.names, lastModified, System.currentTimeMillis() + ttlMillis));
+            return entry.names;
+        }
+
+        return null;
+    }
+
+    public void put(String key, Set<String> names, Long lastModified) {
+
+        entries.put(key, new Entry(Set.copyOf(names), lastModified, System.currentTimeMillis() + ttlMillis));
+    }
+
+    public void invalidate(String key) {
+
+        entries.remove(key);
+    }
+
+    private static class Entry {
+
+        private final Set<String> names;
+        private final Long lastModified;
+        private final long expiresAt;
+
+        private Entry(Set<String> names, Long lastModified, long expiresAt) {
+            this.names = names;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -41,6 +41,13 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
     private static final String _PADDING = " ";
 
     private static final String _LIKE = "LIKE";
+    private static final String _LOWER = "lower";
+    private static final String _ANY = "ANY";
+    private static final String _ARRAY = "ARRAY";
+    private static final String _IN = "IN";
+    private static final String _EXISTS = "EXISTS";
+    private static final String _MEMBERSHIP_ALIAS = "memb_filter";
+    private static final String _EXTENSION_ALIAS = "ext_filter";
     private static final Log LOG = Log.getLog(FilterHandler.class);
 
     @Override
@@ -74,7 +81,17 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
         LOG.ok("Processing through CONTAINS ALL VALUES filter expression");
 
         Attribute attr = containsAllValuesFilter.getAttribute();
-        String snippet = processStringFilter(attr, EQUALS_OP, r);
+        String snippet;
+
+        if (GroupProcessing.ATTR_MEMBERS.equals(attr.getName())
+                || SubjectProcessing.ATTR_MEMBER_OF.equals(attr.getName())) {
+
+            snippet = processMembershipFilter(attr, r);
+        } else {
+
+            snippet = processStringFilter(attr, EQUALS_OP, r);
+        }
+
         r.setCurrentQuerySnippet(snippet);
 
         return r;
@@ -213,7 +230,16 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
 
     @Override
     public ResourceQuery visitEqualsIgnoreCaseFilter(ResourceQuery r, EqualsIgnoreCaseFilter equalsIgnoreCaseFilter) {
-        throw new ConnectorException("Filter 'EQUALS IGNORE CASE FILTER' not implemented by the connector. ");
+
+        LOG.ok("Processing through EQUALS IGNORE CASE filter expression");
+
+        Attribute attr = equalsIgnoreCaseFilter.getAttribute();
+
+        String snippet = processStringFilter(attr, EQUALS_OP, r, equalsIgnoreCaseFilter);
+
+        r.setCurrentQuerySnippet(snippet);
+
+        return r;
     }
 
     private String processStringFilter(Attribute attr, String operator, ResourceQuery r) {
@@ -223,27 +249,47 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
 
     private String processStringFilter(Attribute attr, String operator, ResourceQuery r, Filter filter) {
 
+        return processStringFilter(attr, Collections.singletonList(attr), operator, r, filter);
+    }
+
+    /**
+     * Translates a filter on a single attribute. If more than one attribute is supplied, the attributes are expected
+     * to be equality conditions on the same column. These are collapsed into a single "= ANY(ARRAY[...])" predicate.
+     */
+    private String processStringFilter(Attribute attr, List<Attribute> attrs, String operator, ResourceQuery r,
+                                       Filter filter) {
+
         StringBuilder query = new StringBuilder();
         LOG.ok("String filter is processing attribute {0}, with the value {1}", attr.getName(), attr.getValue());
         if (attr != null) {
-            String singleValue = null;
+            List<String> values = new ArrayList<>();
             String name = attr.getName();
-            List value = attr.getValue();
 
-            if (value != null && !value.isEmpty()) {
+            for (Attribute valueAttr : attrs) {
+                List value = valueAttr.getValue();
 
-                singleValue = AttributeUtil.getSingleValue(attr).toString();
+                if (value != null && !value.isEmpty()) {
 
-            } else {
+                    values.add(AttributeUtil.getSingleValue(valueAttr).toString());
 
-                LOG.error("Unexpected error, attribute {0} without a value.", name);
+                } else {
+
+                    LOG.error("Unexpected error, attribute {0} without a value.", name);
+                    values.add(null);
+                }
             }
 
             name = evaluateNonNativeAttributeNames(r, name);
             LOG.ok("Using the following attribute name after evaluation: {0}", name);
 
+            if (isExtensionAttribute(r, name)) {
+
+                return processExtensionFilter(name, values, operator, r, filter);
+            }
+
             Map<String, Map<String, Class>> tableAndcolumns = r.getColumnInformation();
             String wrappedValue = null;
+            Class columnType = null;
             Iterator<String> iterator = tableAndcolumns.keySet().iterator();
 
             while (iterator.hasNext()) {
@@ -271,12 +317,21 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
 
                     LOG.ok("Original attribute name value: {0}", name);
                     LOG.ok("Wrapping the value {0}, and filter construction for the attribute {1} of the table {2}",
-                            singleValue, attrName, tableName);
+                            values, attrName, tableName);
+
+                    StringJoiner wrappedValues = new StringJoiner(", ");
 
-                    wrappedValue = wrapValue(columns, attrName, singleValue, filter);
+                    for (String singleValue : values) {
+
+                        wrappedValues.add(wrapValue(columns, attrName, singleValue, filter));
+                    }
+
+                    wrappedValue = values.size() > 1 ? _ANY + "(" + _ARRAY + "[" + wrappedValues + "])" :
+                            wrappedValues.toString();
 
                     LOG.ok("Wrapped attribute name value: {0}", wrappedValue);
                     name = name.contains(".") ? name : tableName + "." + name;
+                    columnType = columns.get(attrName);
                     break;
                 } else {
                     if (!iterator.hasNext()) {
@@ -290,10 +345,17 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
 
             if (filter != null) {
 
-                if (filter instanceof ContainsFilter || filter instanceof StartsWithFilter ||
-                        filter instanceof EndsWithFilter) {
+                if (isLikeFilter(filter)) {
+
+                    // Text columns are compared as they are, so that a pattern or trigram index can be used
+                    if (!String.class.equals(columnType)) {
+
+                        name = name + "::TEXT";
+                    }
+                } else if (filter instanceof EqualsIgnoreCaseFilter && String.class.equals(columnType)) {
 
-                    name = name + "::TEXT";
+                    name = _LOWER + "(" + name + ")";
+                    wrappedValue = _LOWER + "(" + wrappedValue + ")";
                 }
             }
 
@@ -309,6 +371,166 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
     }
 
 
+    /**
+     * Translates a membership condition into a semi-join on the membership table, correlated with the main table
+     * of the object class. The object matches if it has a membership for each of the values, so the query returns
+     * a single row per object and the membership table does not need to be joined to the main query.
+     */
+    private String processMembershipFilter(Attribute attr, ResourceQuery r) {
+
+        LOG.ok("Membership filter is processing attribute {0}, with the values {1}", attr.getName(), attr.getValue());
+
+        String valueColumn = r.getObjectClass().is(ObjectProcessing.GROUP_NAME) ?
+                GroupProcessing.ATTR_MEMBERS_NATIVE : SubjectProcessing.ATTR_MEMBER_OF_NATIVE;
+
+        Set<String> values = new LinkedHashSet<>();
+
+        if (attr.getValue() != null) {
+
+            for (Object value : attr.getValue()) {
+
+                if (value != null) {
+
+                    values.add(_S_COL_VALUE_WRAPPER + value.toString().replace(_S_COL_VALUE_WRAPPER,
+                            _S_COL_VALUE_WRAPPER + _S_COL_VALUE_WRAPPER) + _S_COL_VALUE_WRAPPER);
+                }
+            }
+        }
+
+        if (values.isEmpty()) {
+
+            throw new ConnectorException("Unexpected exception in membership filter processing, attribute "
+                    + attr.getName() + " without a value.");
+        }
+
+        StringBuilder query = new StringBuilder();
+        query.append(_EXISTS).append(" (SELECT 1 FROM ").append(ObjectProcessing.TABLE_MEMBERSHIP_NAME)
+                .append(_PADDING).append(_MEMBERSHIP_ALIAS);
+        query.append(" WHERE ").append(correlate(_MEMBERSHIP_ALIAS, r));
+        query.append(_PADDING).append(AND_OP).append(_PADDING).append(_MEMBERSHIP_ALIAS).append(".")
+                .append(valueColumn);
+
+        if (values.size() == 1) {
+
+            query.append(_PADDING).append(EQUALS_OP).append(_PADDING).append(values.iterator().next());
+        } else {
+
+            query.append(_PADDING).append(_IN).append(" (").append(String.join(", ", values)).append(")");
+        }
+
+        if (r.getConfiguration() != null && r.getConfiguration().getExcludeDeletedObjects()) {
+
+            query.append(_PADDING).append(AND_OP).append(_PADDING).append(_MEMBERSHIP_ALIAS).append(".")
+                    .append(ObjectProcessing.ATTR_DELETED).append(_PADDING).append(EQUALS_OP).append(_PADDING)
+                    .append(_S_COL_VALUE_WRAPPER).append("F").append(_S_COL_VALUE_WRAPPER);
+        }
+
+        if (values.size() > 1) {
+
+            query.append(" HAVING COUNT(DISTINCT ").append(_MEMBERSHIP_ALIAS).append(".").append(valueColumn)
+                    .append(") ").append(EQUALS_OP).append(_PADDING).append(values.size());
+        }
+
+        query.append(")");
+
+        LOG.ok("Query snippet value: {0}", query);
+        return query.toString();
+    }
+
+    /**
+     * An attribute is treated as an extension attribute if it is configured as one for the object class and it is
+     * not a column of any of the queried tables.
+     */
+    private boolean isExtensionAttribute(ResourceQuery r, String name) {
+
+        if (r.getConfiguration() == null || name.contains(".")) {
+
+            return false;
+        }
+
+        String[] extended = r.getObjectClass().is(ObjectProcessing.GROUP_NAME) ?
+                r.getConfiguration().getExtendedGroupProperties() :
+                r.getConfiguration().getExtendedSubjectProperties();
+
+        if (extended == null || !Arrays.asList(extended).contains(name)) {
+
+            return false;
+        }
+
+        return r.getColumnInformation().values().stream().noneMatch(columns -> columns.containsKey(name));
+    }
+
+    /**
+     * Translates a condition on an extension attribute into a semi-join on the extension attribute table of the
+     * object class, matching the attribute name and the attribute value.
+     */
+    private String processExtensionFilter(String name, List<String> values, String operator, ResourceQuery r,
+                                          Filter filter) {
+
+        LOG.ok("Extension attribute filter is processing attribute {0}, with the values {1}", name, values);
+
+        String extensionTable = r.getObjectClass().is(ObjectProcessing.GROUP_NAME) ?
+                GroupProcessing.TABLE_GR_EXTENSION_NAME : SubjectProcessing.TABLE_SU_EXTENSION_NAME;
+        Map<String, Class> valueColumn = Map.of(ObjectProcessing.ATTR_EXT_VALUE, String.class);
+
+        StringJoiner wrappedValues = new StringJoiner(", ");
+
+        for (String value : values) {
+
+            wrappedValues.add(wrapValue(valueColumn, ObjectProcessing.ATTR_EXT_VALUE, value, filter));
+        }
+
+        String wrappedValue = values.size() > 1 ? _ANY + "(" + _ARRAY + "[" + wrappedValues + "])" :
+                wrappedValues.toString();
+
+        StringBuilder query = new StringBuilder();
+        query.append(_EXISTS).append(" (SELECT 1 FROM ").append(extensionTable).append(_PADDING)
+                .append(_EXTENSION_ALIAS);
+        query.append(" WHERE ").append(correlate(_EXTENSION_ALIAS, r));
+        query.append(_PADDING).append(AND_OP).append(_PADDING).append(_EXTENSION_ALIAS).append(".")
+                .append(ObjectProcessing.ATTR_EXT_NAME).append(_PADDING).append(EQUALS_OP).append(_PADDING)
+                .append(_S_COL_VALUE_WRAPPER).append(name.replace(_S_COL_VALUE_WRAPPER,
+                        _S_COL_VALUE_WRAPPER + _S_COL_VALUE_WRAPPER)).append(_S_COL_VALUE_WRAPPER);
+        String valueColumnName = _EXTENSION_ALIAS + "." + ObjectProcessing.ATTR_EXT_VALUE;
+
+        if (filter instanceof EqualsIgnoreCaseFilter) {
+
+            valueColumnName = _LOWER + "(" + valueColumnName + ")";
+            wrappedValue = _LOWER + "(" + wrappedValue + ")";
+        }
+
+        query.append(_PADDING).append(AND_OP).append(_PADDING).append(valueColumnName).append(_PADDING)
+                .append(operator).append(_PADDING).append(wrappedValue);
+
+        if (r.getConfiguration().getExcludeDeletedObjects()) {
+
+            query.append(_PADDING).append(AND_OP).append(_PADDING).append(_EXTENSION_ALIAS).append(".")
+                    .append(ObjectProcessing.ATTR_DELETED).append(_PADDING).append(EQUALS_OP).append(_PADDING)
+                    .append(_S_COL_VALUE_WRAPPER).append("F").append(_S_COL_VALUE_WRAPPER);
+        }
+
+        query.append(")");
+
+        LOG.ok("Query snippet value: {0}", query);
+        return query.toString();
+    }
+
+    /**
+     * Correlation of a table referencing the object (membership or extension attribute table) with the main table
+     * of the object class.
+     */
+    private String correlate(String alias, ResourceQuery r) {
+
+        if (r.getObjectClass().is(ObjectProcessing.GROUP_NAME)) {
+
+            return alias + "." + ObjectProcessing.ATTR_GR_ID_IDX + _PADDING + EQUALS_OP + _PADDING
+                    + GroupProcessing.TABLE_GR_NAME + "." + GroupProcessing.ATTR_UID;
+        }
+
+        return alias + "." + ObjectProcessing.ATTR_SCT_ID_IDX + _PADDING + EQUALS_OP + _PADDING
+                + SubjectProcessing.TABLE_SU_NAME + "." + SubjectProcessing.ATTR_UID;
+    }
+
     private String evaluateNonNativeAttributeNames(ResourceQuery r, String name) {
 
         LOG.ok("Non native attribute name evaluation for: {0}", name);
@@ -366,43 +588,106 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
 
     private void processCompositeFilter(Collection<Filter> filters, String op, ResourceQuery r) {
 
-        ResourceQuery query = new ResourceQuery(r.getObjectClass(), r.getColumnInformation());
+        ResourceQuery query = new ResourceQuery(r.getObjectClass(), r.getColumnInformation(),
+                r.getConfiguration());
+        List<ResourceQuery> queries = new ArrayList<>();
+        Map<String, List<Attribute>> equalities = new LinkedHashMap<>();
+
+        for (Filter filter : flattenCompositeFilter(filters, op)) {
 
-        Iterator<Filter> filterIterator = filters.iterator();
+            if (OR_OP.equals(op) && filter instanceof EqualsFilter) {
+                Attribute attr = ((EqualsFilter) filter).getAttribute();
 
-        while (filterIterator.hasNext()) {
+                if (attr.getValue() != null && attr.getValue().size() == 1) {
+
+                    equalities.computeIfAbsent(attr.getName(), k -> new ArrayList<>()).add(attr);
+                    continue;
+                }
+            }
 
-            Filter filter = filterIterator.next();
             if (filter instanceof CompositeFilter || filter instanceof NotFilter) {
-                ResourceQuery compositeQuery = new ResourceQuery(r.getObjectClass(), r.getColumnInformation());
+                ResourceQuery compositeQuery = new ResourceQuery(r.getObjectClass(), r.getColumnInformation(),
+                r.getConfiguration());
                 compositeQuery.setComposite(true);
 
-                r.add(filter.accept(this, compositeQuery), op);
+                queries.add(filter.accept(this, compositeQuery));
             } else {
 
-                r.add(filter.accept(this, query), op);
+                queries.add(copyOf(filter.accept(this, query)));
             }
         }
 
+        for (List<Attribute> attrs : equalities.values()) {
+
+            LOG.ok("Collapsing {0} equality conditions on the attribute {1}", attrs.size(), attrs.get(0).getName());
+
+            ResourceQuery equalityQuery = new ResourceQuery(r.getObjectClass(), r.getColumnInformation(),
+                r.getConfiguration());
+            equalityQuery.setCurrentQuerySnippet(processStringFilter(attrs.get(0), attrs, EQUALS_OP, r, null));
+
+            queries.add(equalityQuery);
+        }
+
+        r.addAll(queries, op);
+    }
+
+    /**
+     * Nested filters of the same operator as the parent (e.g. OR inside of an OR) are pulled up to the parent level,
+     * so that long chains of binary filters do not result in deeply nested query snippets.
+     */
+    private List<Filter> flattenCompositeFilter(Collection<Filter> filters, String op) {
+
+        List<Filter> flattened = new ArrayList<>();
+        Deque<Filter> stack = new ArrayDeque<>();
+        List<Filter> reversed = new ArrayList<>(filters);
+        Collections.reverse(reversed);
+        reversed.forEach(stack::push);
+
+        while (!stack.isEmpty()) {
+            Filter filter = stack.pop();
+
+            if ((OR_OP.equals(op) && filter instanceof OrFilter) || (AND_OP.equals(op) && filter instanceof AndFilter)) {
+
+                List<Filter> nested = new ArrayList<>(((CompositeFilter) filter).getFilters());
+                Collections.reverse(nested);
+                nested.forEach(stack::push);
+            } else {
+
+                flattened.add(filter);
+            }
+        }
+
+        return flattened;
+    }
+
+    private ResourceQuery copyOf(ResourceQuery query) {
+
+        ResourceQuery copy = new ResourceQuery(query.getObjectClass(), query.getColumnInformation(),
+                query.getConfiguration());
+        copy.setCurrentQuerySnippet(query.getCurrentQuerySnippet());
+
+        return copy;
     }
 
 
     private String wrapValue(Map<String, Class> columns, String name, String value, Filter filter) {
         LOG.ok("Evaluating value wrapper for the property: {0}", name);
 
-        if (filter != null) {
+        if (filter != null && isLikeFilter(filter)) {
+
+            String pattern = escapeQuotes(escapeLikePattern(value));
 
             if (filter instanceof ContainsFilter) {
 
-                return _S_COL_VALUE_WRAPPER + "%" + value + "%" + _S_COL_VALUE_WRAPPER;
+                return _S_COL_VALUE_WRAPPER + "%" + pattern + "%" + _S_COL_VALUE_WRAPPER;
 
             } else if (filter instanceof StartsWithFilter) {
 
-                return _S_COL_VALUE_WRAPPER + value + "%" + _S_COL_VALUE_WRAPPER;
+                return _S_COL_VALUE_WRAPPER + pattern + "%" + _S_COL_VALUE_WRAPPER;
 
-            } else if (filter instanceof EndsWithFilter) {
+            } else {
 
-                return _S_COL_VALUE_WRAPPER + "%" + value + _S_COL_VALUE_WRAPPER;
+                return _S_COL_VALUE_WRAPPER + "%" + pattern + _S_COL_VALUE_WRAPPER;
             }
 
         }
@@ -419,7 +704,7 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
             if (type.equals(String.class)) {
 
                 LOG.ok("Addition of String type attribute for attribute from column with name {0}", name);
-                return _S_COL_VALUE_WRAPPER + value + _S_COL_VALUE_WRAPPER;
+                return _S_COL_VALUE_WRAPPER + escapeQuotes(value) + _S_COL_VALUE_WRAPPER;
             }
 
         }
@@ -427,4 +712,32 @@ public class FilterHandler implements FilterVisitor<ResourceQuery, ResourceQuery
         throw new ConnectorException("Unexpected exception in value wrapper evaluation during the processing of the" +
                 "parameter: " + name);
     }
+
+    /**
+     * Doubles the single quotes present in the value, so that the value is a valid string literal.
+     */
+    private String escapeQuotes(String value) {
+
+        return value != null ? value.replace(_S_COL_VALUE_WRAPPER, _S_COL_VALUE_WRAPPER + _S_COL_VALUE_WRAPPER) : null;
+    }
+
+    private boolean isLikeFilter(Filter filter) {
+
+        return filter instanceof ContainsFilter || filter instanceof StartsWithFilter
+                || filter instanceof EndsWithFilter;
+    }
+
+    /**
+     * Escapes the LIKE wildcards present in the value, so that they are matched literally. The backslash is the
+     * default escape character of the LIKE operator in PostgreSQL.
+     */
+    private String escapeLikePattern(String value) {
+
+        if (value == null) {
+
+            return null;
+        }
+
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
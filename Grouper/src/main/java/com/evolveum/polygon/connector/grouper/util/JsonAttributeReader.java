@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.BiConsumer;
+
+/**
+ * Streaming reader of flat JSON objects, as produced by the 'jsonb_object_agg' aggregation of the extension attribute
+ * tables. Each name - value pair is handed over to the consumer as soon as it is read, no intermediate document
+ * is built. Only string, number, boolean and null values are expected, these are passed on in their textual form.
+ * A value may be also an array of such values, as aggregated for an attribute with several values, each of its
+ * elements is then handed over as a separate pair.
+ */
+public class JsonAttributeReader {
+
+    private final Reader reader;
+    private int current;
+
+    public JsonAttributeReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public void read(BiConsumer<String, String> consumer) throws IOException {
+
+        next();
+        skipWhitespace();
+
+        if (current == -1) {
+
+            return;
+        }
+
+        expect('{');
+        next();
+        skipWhitespace();
+
+        if (current == '}') {
+
+            return;
+        }
+
+        while (true) {
+
+            skipWhitespace();
+            expect('"');
+            String name = readString();
+
+            skipWhitespace();
+            expect(':');
+            next();
+            skipWhitespace();
+
+            if (current == '[') {
+
+                readArray(name, consumer);
+            } else {
+
+                consumer.accept(name, readValue());
+            }
+
+            skipWhitespace();
+
+            if (current == ',') {
+
+                next();
+            } else if (current == '}') {
+
+                return;
+            } else {
+
+                throw unexpected();
+            }
+        }
+    }
+
+    private void readArray(String name, BiConsumer<String, String> consumer) throws IOException {
+
+        next();
+        skipWhitespace();
+
+        if (current == ']') {
+
+            next();
+            return;
+        }
+
+        while (true) {
+
+            skipWhitespace();
+            consumer.accept(name, readValue());
+            skipWhitespace();
+
+            if (current == ',') {
+
+                next();
+            } else if (current == ']') {
+
+                next();
+                return;
+            } else {
+
+                throw unexpected();
+            }
+        }
+    }
+
+    private String readValue() throws IOException {
+
+        if (current == '"') {
+
+            return readString();
+        }
+
+        return readLiteral();
+    }
+
+    private String readString() throws IOException {
+        StringBuilder value = new StringBuilder();
+
+        next();
+        while (current != '"') {
+
+            if (current == -1) {
+
+                throw unexpected();
+            }
+
+            if (current == '\\') {
+                next();
+
+                switch (current) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        char[] hex = new char[4];
+
+                        for (int i = 0; i < hex.length; i++) {
+                            next();
+
+                            if (current == -1) {
+
+                                throw unexpected();
+                            }
+                            hex[i] = (char) current;
+                        }
+
+                        value.append((char) Integer.parseInt(new String(hex), 16));
+                        break;
+                    case -1:
+                        throw unexpected();
+                    default:
+                        value.append((char) current);
+                }
+            } else {
+
+                value.append((char) current);
+            }
+
+            next();
+        }
+
+        next();
+        return value.toString();
+    }
+
+    private String readLiteral() throws IOException {
+        StringBuilder literal = new StringBuilder();
+
+        while (current != -1 && current != ',' && current != '}' && current != ']'
+                && !Character.isWhitespace(current)) {
+
+            if (current == '{' || current == '[') {
+
+                throw new ConnectorException("Nested JSON structures are not supported in extension attribute values.");
+            }
+
+            literal.append((char) current);
+            next();
+        }
+
+        if (literal.length() == 0) {
+
+            throw unexpected();
+        }
+
+        String value = literal.toString();
+
+        return "null".equals(value) ? null : value;
+    }
+
+    private void skipWhitespace() throws IOException {
+
+        while (current != -1 && Character.isWhitespace(current)) {
+            next();
+        }
+    }
+
+    private void expect(char expected) {
+
+        if (current != expected) {
+
+            throw unexpected();
+        }
+    }
+
+    private void next() throws IOException {
+        current = reader.read();
+    }
+
+    private ConnectorException unexpected() {
+
+        return new ConnectorException("Unexpected " + (current == -1 ? "end of input" : "character '"
+                + (char) current + "'") + " while reading the aggregated extension attributes.");
+    }
+}
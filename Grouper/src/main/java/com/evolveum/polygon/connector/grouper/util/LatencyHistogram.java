@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with buckets of powers of two microseconds. Recording a value costs a few atomic
+ * additions, the percentiles are approximated by the upper bound of the bucket they fall into.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Long::max, 0);
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+
+        counts.incrementAndGet(bucket(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalMicros() {
+        return totalMicros.sum();
+    }
+
+    public long getMeanMicros() {
+        long samples = count.sum();
+
+        return samples == 0 ? 0 : totalMicros.sum() / samples;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Returns the approximate percentile (0 to 100) of the recorded latencies in microseconds.
+     */
+    public long getPercentileMicros(double percentile) {
+        long samples = count.sum();
+
+        if (samples == 0) {
+
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(samples * percentile / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            seen = seen + counts.get(i);
+
+            if (seen >= rank) {
+
+                return Math.min(upperBound(i), getMaxMicros());
+            }
+        }
+
+        return getMaxMicros();
+    }
+
+    public void reset() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            counts.set(i, 0);
+        }
+
+        count.reset();
+        totalMicros.reset();
+        maxMicros.reset();
+    }
+
+    private static int bucket(long micros) {
+
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static long upperBound(int bucket) {
+
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+
+        return "count=" + getCount() + ", mean=" + getMeanMicros() + "us, p50=" + getPercentileMicros(50)
+                + "us, p95=" + getPercentileMicros(95) + "us, p99=" + getPercentileMicros(99)
+                + "us, max=" + getMaxMicros() + "us";
+    }
+}
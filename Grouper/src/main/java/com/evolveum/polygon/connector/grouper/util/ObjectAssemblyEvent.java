@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the assembly of objects from the rows of a result set, from the first row until the
+ * result set is drained.
+ */
+@Name("com.evolveum.polygon.connector.grouper.ObjectAssembly")
+@Label("Object Assembly")
+@Category({"Grouper Connector"})
+@Description("Objects assembled from the rows of a result set by the Grouper connector")
+@StackTrace(false)
+public class ObjectAssemblyEvent extends Event {
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Objects")
+    public int objects;
+
+    @Label("Object Class")
+    public String objectClass;
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded, least recently used cache of assembled connector objects, used to answer Uid lookups. Each entry carries
+ * the latest modification time stamp of the rows the object was assembled from. An entry is served only if the
+ * time stamp read from the database at lookup time is the same, so a stale object is never returned.
+ * <p>
+ * A key looked up for the first time is only marked as requested, without an object. The object is cached from its
+ * next lookup on, so that objects read only once do not pay for the time stamp query.
+ * <p>
+ * One cache instance exists per resource (database and table prefix) and is shared by all connector instances
+ * configured against it. If these are configured with different cache sizes, the cache is bounded by the largest
+ * of them.
+ */
+public class ObjectCache {
+
+    private static final Log LOG = Log.getLog(ObjectCache.class);
+    private static final Map<String, ObjectCache> INSTANCES = new ConcurrentHashMap<>();
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private int maxSize;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long estimatedBytes = 0;
+
+    private ObjectCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public static ObjectCache getInstance(String resourceKey, int maxSize) {
+
+        ObjectCache cache = INSTANCES.computeIfAbsent(resourceKey, key -> new ObjectCache(maxSize));
+        cache.ensureMaxSize(maxSize);
+
+        return cache;
+    }
+
+    private synchronized void ensureMaxSize(int maxSize) {
+
+        if (maxSize > this.maxSize) {
+
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Returns the cached object if it was assembled at the supplied modification time stamp, null otherwise.
+     */
+    public synchronized ConnectorObject get(String key, Long lastModified) {
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.object == null) {
+
+            misses++;
+            return null;
+        }
+
+        if (entry != null && Objects.equals(entry.lastModified, lastModified)) {
+            hits++;
+
+            return entry.object;
+        }
+
+        if (entry != null) {
+
+            LOG.ok("Cached object {0} is stale and will be fetched again.", key);
+            remove(key);
+        }
+
+        misses++;
+        return null;
+    }
+
+    /**
+     * Returns true if the key was requested before, i.e. it has an entry with or without an object.
+     */
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Marks the key as requested, without caching any object, and counts the lookup as a miss.
+     */
+    public synchronized void markRequested(String key) {
+
+        misses++;
+        store(key, new Entry(null, null, ENTRY_OVERHEAD));
+    }
+
+    public synchronized void put(String key, ConnectorObject object, Long lastModified) {
+
+        store(key, new Entry(object, lastModified, estimateSize(object)));
+    }
+
+    private void store(String key, Entry entry) {
+
+        remove(key);
+        entries.put(key, entry);
+        estimatedBytes += entry.size;
+
+        while (entries.size() > maxSize) {
+            String eldest = entries.keySet().iterator().next();
+
+            remove(eldest);
+            evictions++;
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+
+        if (removed != null) {
+
+            estimatedBytes -= removed.size;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "Size: " + entries.size() + "; Hit rate: " + getHitRate() + "; Evictions: " + evictions
+                + "; Estimated bytes: " + estimatedBytes;
+    }
+
+    /**
+     * Rough estimate of the retained size of an object, based on the length of the attribute names and values.
+     */
+    static long estimateSize(ConnectorObject object) {
+        long size = ENTRY_OVERHEAD;
+
+        for (Attribute attribute : object.getAttributes()) {
+
+            size += ENTRY_OVERHEAD + 2L * attribute.getName().length();
+
+            if (attribute.getValue() != null) {
+
+                for (Object value : attribute.getValue()) {
+
+                    size += ENTRY_OVERHEAD + (value != null ? 2L * value.toString().length() : 0);
+                }
+            }
+        }
+
+        return size;
+    }
+
+    private static class Entry {
+
+        private final ConnectorObject object;
+        private final Long lastModified;
+        private final long size;
+
+        private Entry(ConnectorObject object, Long lastModified, long size) {
+            this.object = object;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -18,11 +18,23 @@ package com.evolveum.polygon.connector.grouper.util;
 
 import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
 import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
 import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.common.objects.filter.EqualsFilter;
 import org.identityconnectors.framework.common.objects.filter.Filter;
+import org.identityconnectors.framework.common.objects.filter.FilterBuilder;
+import org.identityconnectors.framework.spi.SearchResultsHandler;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.sql.*;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public abstract class ObjectProcessing {
     private static final Log LOG = Log.getLog(ObjectProcessing.class);
@@ -37,9 +49,16 @@ public abstract class ObjectProcessing {
     protected static final String ATTR_DELETED = "deleted";
     protected static final String ATTR_DELETED_TRUE = "T";
     protected static final String ATTR_MODIFIED_LATEST = "latest_timestamp";
+    protected static final String ATTR_EXT_ATTRIBUTES = "ext_attributes";
     private static final String _COUNT = "count";
+    private static final Pattern _PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
     protected static String TABLE_MEMBERSHIP_NAME = null;
     protected GrouperConfiguration configuration;
+    private String snapshotId;
+    private ConnectorMetrics metrics;
+    private Supplier<Connection> reconnect;
+    private boolean uidLookup = false;
+    private ActiveStatements activeStatements = new ActiveStatements(null);
 
     protected Map<String, Class> objectColumns = Map.ofEntries(
             Map.entry(ATTR_MODIFIED, Long.class),
@@ -54,6 +73,10 @@ public abstract class ObjectProcessing {
             Map.entry(ATTR_DELETED, String.class)
     );
 
+    protected Map<String, Class> pivotedExtensionColumns = Map.ofEntries(
+            Map.entry(ATTR_EXT_ATTRIBUTES, String.class)
+    );
+
     protected Map<String, Class> membershipColumns = Map.ofEntries(
             Map.entry(ATTR_GR_ID_IDX, String.class),
             Map.entry(ATTR_SCT_ID_IDX, String.class),
@@ -158,6 +181,15 @@ public abstract class ObjectProcessing {
 
                 etxAttrValue = resultSet.getString(i);
 
+            } else if (ATTR_EXT_ATTRIBUTES.equals(name)) {
+
+                Reader extAttributes = resultSet.getCharacterStream(i);
+
+                if (extAttributes != null) {
+
+                    readPivotedExtensionAttributes(extAttributes, grouperObject, multiValuedAttributesCatalogue);
+                }
+
             } else if (ATTR_DELETED.equals(name)) {
 
                 String deleted = resultSet.getString(i);
@@ -271,6 +303,440 @@ public abstract class ObjectProcessing {
         return grouperObject;
     }
 
+    private void readPivotedExtensionAttributes(Reader extAttributes, GrouperObject grouperObject,
+                                                Set<String> multiValuedAttributesCatalogue) {
+
+        try (extAttributes) {
+
+            new JsonAttributeReader(extAttributes).read((extName, extValue) ->
+                    grouperObject.addAttribute(extName, extValue, multiValuedAttributesCatalogue));
+
+        } catch (IOException e) {
+
+            throw new ConnectorException("Exception occurred while reading the aggregated extension attributes of " +
+                    "the object: " + grouperObject.getIdentifier() + ". " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Fetches the names of the attributes present in the extension attribute table of the object class. The names
+     * are read by a single 'SELECT DISTINCT' over the whole table and kept in the supplied cache, see
+     * {@link ExtensionSchemaCache}.
+     */
+    public Set<String> fetchExtensionSchema(Connection connection, ExtensionSchemaCache cache) throws SQLException {
+
+        String cacheKey = getExtensionSchemaCacheKey();
+
+        Set<String> extensionAttributeNames = cache.getIfFresh(cacheKey);
+
+        if (extensionAttributeNames != null) {
+
+            return extensionAttributeNames;
+        }
+
+        // Rows marked as deleted are modified as well, the latest modification is evaluated over the whole table
+        QueryBuilder modifiedQueryBuilder = new QueryBuilder(getObjectClass(), null,
+                Map.of(getExtensionAttributeTableName(), extensionColumns), getExtensionAttributeTableName(), null);
+
+        Long lastModified = null;
+
+        try (StatementExecution execution = executeStatement(connection,
+                modifiedQueryBuilder.buildMaxQuery(ATTR_MODIFIED))) {
+            ResultSet result = execution.getResultSet();
+
+            if (execution.next()) {
+
+                long resVal = result.getLong(1);
+                lastModified = result.wasNull() ? null : resVal;
+            }
+        }
+
+        extensionAttributeNames = cache.revalidate(cacheKey, lastModified);
+
+        if (extensionAttributeNames != null) {
+
+            return extensionAttributeNames;
+        }
+
+        Filter filter = null;
+
+        if (configuration.getExcludeDeletedObjects()) {
+
+            filter = FilterBuilder.equalTo(AttributeBuilder.build(getExtensionAttributeTableName() + "."
+                    + ATTR_DELETED, "F"));
+        }
+
+        QueryBuilder queryBuilder = new QueryBuilder(getObjectClass(), filter,
+                Map.of(getExtensionAttributeTableName(), extensionColumns), getExtensionAttributeTableName(), null);
+
+        extensionAttributeNames = new HashSet<>();
+
+        try (StatementExecution execution = executeStatement(connection,
+                queryBuilder.buildDistinctQuery(ATTR_EXT_NAME))) {
+            ResultSet result = execution.getResultSet();
+
+            while (execution.next()) {
+                String nameValue = result.getString(1);
+
+                if (nameValue != null) {
+
+                    LOG.ok("Extension attribute name which is being added to extended resource schema: {0}",
+                            nameValue);
+                    extensionAttributeNames.add(nameValue);
+                }
+            }
+        }
+
+        cache.put(cacheKey, extensionAttributeNames, lastModified);
+
+        return extensionAttributeNames;
+    }
+
+    /**
+     * Lists the indexes of the main and extension attribute tables of the object class which support the case
+     * insensitive and pattern conditions produced by the filter translation. These are indexes on 'lower()'
+     * expressions, and trigram or pattern operator class indexes.
+     */
+    public List<String> fetchSearchIndexes(Connection connection) throws SQLException {
+
+        String query = "SELECT tablename, indexname, indexdef FROM pg_indexes WHERE schemaname = current_schema()"
+                + " AND tablename IN ('" + getMainTableName() + "', '" + getExtensionAttributeTableName() + "')"
+                + " AND (indexdef ILIKE '%lower(%' OR indexdef ILIKE '%\\_trgm\\_ops%'"
+                + " OR indexdef ILIKE '%\\_pattern\\_ops%')";
+
+        List<String> indexes = new ArrayList<>();
+
+        try (StatementExecution execution = executeStatement(connection, query)) {
+            ResultSet result = execution.getResultSet();
+
+            while (execution.next()) {
+
+                indexes.add(result.getString(1) + "." + result.getString(2) + ": " + result.getString(3));
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Returns the statements creating the 'lower()' expression indexes, which the case insensitive equality
+     * conditions on the name column and on the extension attribute values need, if they are not present. Without
+     * them such conditions are evaluated by sequential scans.
+     */
+    public List<String> fetchMissingSearchIndexes(Connection connection) throws SQLException {
+
+        List<String> indexes = fetchSearchIndexes(connection);
+        List<String> missing = new ArrayList<>();
+
+        for (Map.Entry<String, String> column : new TreeMap<>(Map.of(getMainTableName(), getNameColumnName(),
+                getExtensionAttributeTableName(), ATTR_EXT_VALUE)).entrySet()) {
+
+            String table = column.getKey();
+            Pattern lowerExpression = Pattern.compile("lower\\(\\(?" + Pattern.quote(column.getValue()) + "\\b",
+                    Pattern.CASE_INSENSITIVE);
+
+            if (indexes.stream().noneMatch(index -> index.startsWith(table + ".")
+                    && lowerExpression.matcher(index).find())) {
+
+                missing.add("CREATE INDEX " + table + "_lower_" + column.getValue() + "_idx ON " + table
+                        + " (lower(" + column.getValue() + "))");
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * The settings the returned objects depend on. These are a part of the object cache key, so that connectors
+     * configured differently against the same resource do not serve each other's objects.
+     */
+    public String getObjectSettingsKey() {
+
+        return configuration.getExcludeDeletedObjects() + "/" + configuration.getPivotExtensionAttributes() + "/"
+                + sortedNames(configuration.getExtendedGroupProperties()) + "/"
+                + sortedNames(configuration.getExtendedSubjectProperties());
+    }
+
+    private static Set<String> sortedNames(String[] names) {
+
+        return names != null ? new TreeSet<>(Arrays.asList(names)) : Set.of();
+    }
+
+    /**
+     * Key of the extension attribute names in the {@link ExtensionSchemaCache}. The names of attributes present only
+     * in deleted rows are left out if deleted objects are excluded, so the setting is a part of the key.
+     */
+    public String getExtensionSchemaCacheKey() {
+
+        return getResourceKey() + "/" + getExtensionAttributeTableName() + "/"
+                + (configuration.getExcludeDeletedObjects() ? "excludeDeleted" : "includeDeleted");
+    }
+
+    protected String getResourceKey() {
+
+        return getResourceKey(configuration);
+    }
+
+    /**
+     * Identifies the resource (database, schema and table prefix) the configuration points to.
+     */
+    public static String getResourceKey(GrouperConfiguration configuration) {
+
+        return configuration.getHost() + ":" + configuration.getPort() + "/" + configuration.getDatabaseName() + "/"
+                + configuration.getSchema() + "/" + configuration.getTablePrefix();
+    }
+
+    protected ConnectorMetrics getMetrics() {
+
+        if (metrics == null) {
+
+            metrics = ConnectorMetrics.getInstance(getResourceKey());
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Builds the query of the query builder, measuring the time needed to build it.
+     */
+    protected String buildQuery(QueryBuilder queryBuilder) {
+        long startNanos = System.nanoTime();
+
+        String query = queryBuilder.build();
+        getMetrics().recordLatency(ConnectorMetrics.PHASE_QUERY_BUILD, startNanos);
+
+        return query;
+    }
+
+    /**
+     * Executes the query, the rows of the returned {@link StatementExecution} have to be iterated by its
+     * {@link StatementExecution#next()} method. Unless the processing is a Uid lookup, the statement waits for its
+     * admission if the number of concurrent statements against the database is limited, see
+     * {@link AdmissionControl}.
+     */
+    protected StatementExecution executeStatement(Connection connection, String query) throws SQLException {
+
+        return executeStatement(connection, query, null);
+    }
+
+    /**
+     * Executes the query as {@link #executeStatement(Connection, String)}, the database cancels the statement if it
+     * runs longer than the query timeout in seconds.
+     */
+    protected StatementExecution executeStatement(Connection connection, String query, Integer queryTimeout)
+            throws SQLException {
+
+        return StatementExecution.execute(connection, configuration, query, getMetrics(), getObjectClass(),
+                uidLookup ? null : AdmissionControl.getInstance(configuration), queryTimeout, activeStatements);
+    }
+
+    /**
+     * Cancels the statements of the processing executed at the moment, e.g. when the connector is disposed during
+     * an operation.
+     */
+    public void cancelStatements() {
+        activeStatements.cancelAll();
+    }
+
+    /**
+     * Marks the processing as a lookup of a single object by its Uid, such statements bypass the admission control.
+     */
+    protected void setUidLookup(boolean uidLookup) {
+        this.uidLookup = uidLookup;
+    }
+
+    /**
+     * Evaluates a Uid lookup against the object cache, if the cache is enabled. Returns null if the object was served
+     * from the cache, otherwise a handler which should be used for the query. The time stamp of the object is
+     * evaluated and the handler populates the cache only if the object was looked up before, see {@link ObjectCache}.
+     * With the cache disabled, the query is executed as it is.
+     */
+    protected ResultsHandler readThroughObjectCache(EqualsFilter uidFilter, ResultsHandler handler,
+                                                    OperationOptions operationOptions, Connection connection) {
+
+        Integer objectCacheSize = configuration.getObjectCacheSize();
+
+        if (objectCacheSize == null || objectCacheSize <= 0) {
+
+            return handler;
+        }
+
+        String uid = AttributeUtil.getAsStringValue(uidFilter.getAttribute());
+
+        try {
+            Long.parseLong(uid);
+        } catch (NumberFormatException e) {
+
+            LOG.ok("Uid value {0} is not a numeric identifier, object cache not used.", uid);
+            return handler;
+        }
+
+        Set<String> attributesToGet = getAttributesToGet(operationOptions);
+        String cacheKey = getObjectClass().getObjectClassValue() + "/" + uid + "/" +
+                (attributesToGet != null ? new TreeSet<>(attributesToGet) : "") + "/" + getObjectSettingsKey();
+
+        ObjectCache objectCache = ObjectCache.getInstance(getResourceKey(), objectCacheSize);
+
+        if (!objectCache.contains(cacheKey)) {
+
+            // Nothing can be served yet, the object is fetched without evaluating its time stamp
+            objectCache.markRequested(cacheKey);
+            return handler;
+        }
+
+        Long lastModified = fetchLatestObjectModification(uid, connection);
+        ConnectorObject cachedObject = objectCache.get(cacheKey, lastModified);
+
+        LOG.ok("Object cache state: {0}", objectCache);
+
+        if (cachedObject != null) {
+
+            LOG.ok("Object {0} served from object cache.", cacheKey);
+            if (handler.handle(cachedObject) && handler instanceof SearchResultsHandler) {
+
+                ((SearchResultsHandler) handler).handleResult(new SearchResult(uid, -1));
+            }
+
+            return null;
+        }
+
+        return new SearchResultsHandler() {
+            @Override
+            public boolean handle(ConnectorObject connectorObject) {
+
+                if (uid.equals(connectorObject.getUid().getUidValue())) {
+
+                    objectCache.put(cacheKey, connectorObject, lastModified);
+                }
+
+                return handler.handle(connectorObject);
+            }
+
+            @Override
+            public void handleResult(SearchResult result) {
+
+                if (handler instanceof SearchResultsHandler) {
+
+                    ((SearchResultsHandler) handler).handleResult(result);
+                }
+            }
+        };
+    }
+
+    /**
+     * Fetches the latest modification time stamp of the rows related to a single object, using an index lookup on
+     * each table related to the object class instead of joining the tables.
+     */
+    private Long fetchLatestObjectModification(String uid, Connection connection) {
+
+        String query = "SELECT GREATEST("
+                + "(SELECT MAX(" + ATTR_MODIFIED + ") FROM " + getMainTableName() + " WHERE "
+                + getUidColumnName() + " = " + uid + "), "
+                + "(SELECT MAX(" + ATTR_MODIFIED + ") FROM " + getMembershipTableName() + " WHERE "
+                + getReferenceColumnName() + " = " + uid + "), "
+                + "(SELECT MAX(" + ATTR_MODIFIED + ") FROM " + getExtensionAttributeTableName() + " WHERE "
+                + getReferenceColumnName() + " = " + uid + "))";
+
+        try (StatementExecution execution = executeStatement(connection, query,
+                configuration.getSearchQueryTimeout())) {
+            ResultSet result = execution.getResultSet();
+
+            if (execution.next()) {
+
+                long resVal = result.getLong(1);
+                return result.wasNull() ? null : resVal;
+            }
+
+            return null;
+        } catch (SQLException e) {
+
+            throw new ExceptionHandler().evaluateAndHandleException(e, true, false,
+                    "Exception occurred while evaluating the latest modification of the object " + uid);
+        }
+    }
+
+    /**
+     * Builds the paged results cookie pointing at the object. For searches sorted by a column the cookie carries the
+     * sort value of the object as well. The cookie is bound to the search by its fingerprint and carries the
+     * snapshot the search reads, if any, see {@link PagingCookie}.
+     */
+    protected String buildPagingCookie(GrouperObject grouperObject, QueryBuilder queryBuilder) {
+
+        String sortColumn = queryBuilder.getSortColumn();
+        PagingCookie cookie;
+
+        if (sortColumn == null) {
+
+            cookie = PagingCookie.unsorted(grouperObject.getIdentifier());
+        } else {
+
+            String sortValue;
+
+            if (sortColumn.equals(getUidColumnName())) {
+
+                sortValue = grouperObject.getIdentifier();
+            } else if (sortColumn.equals(getNameColumnName())) {
+
+                sortValue = grouperObject.getName();
+            } else {
+
+                Object value = grouperObject.getAttributes().get(sortColumn);
+                sortValue = value != null ? value.toString() : null;
+            }
+
+            cookie = new PagingCookie(sortValue, grouperObject.getIdentifier());
+        }
+
+        return cookie.setFingerprint(queryBuilder.getSearchFingerprint()).setSnapshotId(snapshotId)
+                .setTotalCount(queryBuilder.getTotalCount()).toString();
+    }
+
+    /**
+     * Sets the identifier of the exported snapshot the search reads, so that it is handed over in the paged results
+     * cookie.
+     */
+    public void setSnapshotId(String snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    /**
+     * Sets the supplier of a new connection, replacing a connection lost by a transient failure. Reads are retried
+     * only if the supplier is set, see {@link ReadRetry}.
+     */
+    public void setReconnect(Supplier<Connection> reconnect) {
+        this.reconnect = reconnect;
+    }
+
+    /**
+     * Registers the statements of the processing also in the statements of the connector instance, which are
+     * cancelled when the instance is disposed.
+     */
+    public void setParentStatements(ActiveStatements parentStatements) {
+        this.activeStatements = new ActiveStatements(parentStatements);
+    }
+
+    public ReadRetry newReadRetry(Connection connection) {
+
+        return new ReadRetry(configuration, connection, reconnect, getMetrics());
+    }
+
+    protected abstract ObjectClass getObjectClass();
+
+    /**
+     * Name of the identifier column in the main table of the object class.
+     */
+    protected abstract String getUidColumnName();
+
+    /**
+     * Name of the column holding the value of the Name attribute in the main table of the object class.
+     */
+    protected abstract String getNameColumnName();
+
+    /**
+     * Name of the column referencing the object in the membership and extension attribute tables.
+     */
+    protected abstract String getReferenceColumnName();
+
     protected abstract String getMemberShipAttributeName();
 
     protected abstract String getExtensionAttributeTableName();
@@ -348,7 +814,9 @@ public abstract class ObjectProcessing {
 
         SyncDelta syncdelta = builder.build();
 
-        if (!syncResultsHandler.handle(syncdelta)) {
+        boolean handled = handle(objectClass, objID, () -> syncResultsHandler.handle(syncdelta));
+
+        if (!handled) {
 
             LOG.warn("Result handling interrupted by handler!");
             return false;
@@ -357,6 +825,21 @@ public abstract class ObjectProcessing {
         return true;
     }
 
+    /**
+     * Hands the object over to the handler as a sync delta, if the sync budget admits it. Returns false if the budget
+     * is exhausted or the handling was interrupted by the handler.
+     */
+    public boolean sync(SyncResultsHandler syncResultsHandler, ObjectClass objectClass,
+                        GrouperObject grouperObject, SyncBudget syncBudget) {
+
+        if (!syncBudget.admit(grouperObject)) {
+
+            return false;
+        }
+
+        return sync(syncResultsHandler, objectClass, grouperObject);
+    }
+
     public abstract LinkedHashMap<String, GrouperObject> sync(SyncToken syncToken, OperationOptions operationOptions,
                                                               Connection connection, QueryBuilder query,
                                                               boolean isAllObjectClass);
@@ -370,16 +853,77 @@ public abstract class ObjectProcessing {
     protected abstract void sync(SyncToken syncToken, SyncResultsHandler syncResultsHandler,
                                  OperationOptions operationOptions, Connection connection);
 
+    /**
+     * Evaluates the number of rows returned by the query according to the configured count strategy. The value is
+     * only reported, it does not decide whether the query is executed in pages, as an earlier or estimated count may
+     * be lower than the current number of rows. Returns null if counting is disabled.
+     */
+    protected Integer countRows(QueryBuilder queryBuilder, Connection connection) {
+        String countStrategy = configuration.getCountStrategy();
+
+        if (GrouperConfiguration.COUNT_STRATEGY_NONE.equals(countStrategy)) {
+
+            LOG.ok("Counting of rows disabled, the query will be paged until a page is not full");
+            return null;
+        }
+
+        if (GrouperConfiguration.COUNT_STRATEGY_ESTIMATED.equals(countStrategy)) {
+
+            return estimateRows(queryBuilder, connection);
+        }
+
+        return countAll(queryBuilder, connection);
+    }
+
+    /**
+     * Evaluates the number of rows of the whole search, regardless of the position of the requested page. Within
+     * a paged search the count is evaluated for its first page and handed over in the paged results cookie, so that
+     * the following pages of the same search do not repeat it. A new search evaluates the count again.
+     */
+    protected Integer countSearchRows(QueryBuilder queryBuilder, OperationOptions operationOptions,
+                                      Connection connection) {
+
+        String cookie = operationOptions != null ? operationOptions.getPagedResultsCookie() : null;
+
+        if (cookie != null && !cookie.isEmpty()) {
+
+            PagingCookie pagingCookie = PagingCookie.parse(cookie);
+
+            if (pagingCookie.getTotalCount() != null
+                    && queryBuilder.getSearchFingerprint().equals(pagingCookie.getFingerprint())) {
+
+                LOG.ok("The number of rows of the paged search: {0}", pagingCookie.getTotalCount());
+                return pagingCookie.getTotalCount();
+            }
+        }
+
+        OperationOptions countOptions = null;
+
+        if (operationOptions != null) {
+
+            Map<String, Object> options = new HashMap<>(operationOptions.getOptions());
+            options.remove(OperationOptions.OP_PAGE_SIZE);
+            options.remove(OperationOptions.OP_PAGED_RESULTS_COOKIE);
+            options.remove(OperationOptions.OP_PAGED_RESULTS_OFFSET);
+            countOptions = new OperationOptions(options);
+        }
+
+        return countRows(queryBuilder.clone(countOptions), connection);
+    }
+
     protected Integer countAll(QueryBuilder queryBuilder, Connection connection) {
         Integer count = null;
         queryBuilder.asCount();
         ResultSet result;
 
-        try {
-            PreparedStatement prepareStatement = connection.prepareStatement(queryBuilder.build());
-            result = prepareStatement.executeQuery();
+        String query = buildQuery(queryBuilder);
+        long startNanos = System.nanoTime();
+
+        try (StatementExecution execution = executeStatement(connection, query,
+                configuration.getCountQueryTimeout())) {
+            result = execution.getResultSet();
 
-            while (result.next()) {
+            while (execution.next()) {
 
                 ResultSetMetaData meta = result.getMetaData();
 
@@ -394,6 +938,7 @@ public abstract class ObjectProcessing {
                 }
             }
 
+            getMetrics().recordCountQuery(startNanos);
             LOG.ok("The number of rows: {0}", count);
 
         } catch (SQLException e) {
@@ -405,29 +950,339 @@ public abstract class ObjectProcessing {
         return count;
     }
 
+    /**
+     * Estimates the number of rows returned by the query. Unfiltered scans of a single table use the table
+     * statistics, other queries the row estimate of the query plan.
+     */
+    protected Integer estimateRows(QueryBuilder queryBuilder, Connection connection) {
+        Long estimate = null;
+        long startNanos = System.nanoTime();
+
+        try {
+
+            if (queryBuilder.isUnfilteredScan()) {
+
+                String query = "SELECT reltuples::BIGINT FROM pg_class WHERE oid = to_regclass('"
+                        + queryBuilder.getSelectTable() + "')";
+
+                try (StatementExecution execution = executeStatement(connection, query,
+                        configuration.getCountQueryTimeout())) {
+                    ResultSet result = execution.getResultSet();
+
+                    if (execution.next() && result.getLong(1) >= 0) {
+
+                        estimate = result.getLong(1);
+                    }
+                }
+            }
+
+            if (estimate == null) {
+
+                String query = "EXPLAIN (FORMAT JSON) " + queryBuilder.build();
+
+                try (StatementExecution execution = executeStatement(connection, query,
+                        configuration.getCountQueryTimeout())) {
+                    ResultSet result = execution.getResultSet();
+
+                    if (execution.next()) {
+
+                        Matcher matcher = _PLAN_ROWS.matcher(result.getString(1));
+                        if (matcher.find()) {
+
+                            estimate = Long.parseLong(matcher.group(1));
+                        }
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+
+            throw new ExceptionHandler().evaluateAndHandleException(e, true, false,
+                    "Exception occurred during 'estimate rows' procedure");
+        }
+
+        getMetrics().recordCountQuery(startNanos);
+        LOG.ok("The estimated number of rows: {0}", estimate);
+
+        return estimate == null ? null : (int) Math.min(estimate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns true if the requested page size (or its absence) exceeds the configured maximal page size, so the
+     * query has to be executed in pages.
+     */
+    public boolean exceedsMaxPageSize(OperationOptions operationOptions) {
+        Integer maxPageSize = configuration.getMaxPageSize();
+
+        if (maxPageSize == null) {
+
+            return false;
+        }
+
+        Integer pageSize = null;
+
+        if (operationOptions != null && operationOptions.getOptions().containsKey(OperationOptions.OP_PAGE_SIZE)) {
+
+            pageSize = operationOptions.getPageSize();
+        }
+
+        return pageSize == null || pageSize > maxPageSize;
+    }
+
+    /**
+     * Executes the query in consecutive pages of the maximal page size. The pages are fetched until the page
+     * handler reports that no further rows may follow, the row count is not used as a bound as it might be
+     * estimated or cached.
+     */
+    public void executeInPages(QueryBuilder queryBuilder, Integer maxPageSize, BooleanSupplier pageHandler) {
+
+        for (int i = 0; ; i = i + maxPageSize) {
+
+            queryBuilder.setPageSize(maxPageSize);
+            queryBuilder.setPageOffset(i + 1);
+            getMetrics().recordPage();
+
+            if (!pageHandler.getAsBoolean()) {
+
+                break;
+            }
+        }
+    }
+
+    public abstract QueryBuilder syncQuery(SyncToken syncToken, OperationOptions operationOptions,
+                                           Connection connection, boolean isAllObjectClass);
+
     public abstract Long getLatestSyncToken(Connection connection);
 
     protected void handleLargerThanMaxSize(ObjectClass oClass, SyncResultsHandler syncResultsHandler,
                                            SyncToken syncToken, QueryBuilder syncQueryBuilder,
                                            OperationOptions operationOptions, Connection connection,
-                                           Integer totalRows, Integer maxPageSize) {
+                                           Integer maxPageSize, SyncBudget syncBudget) {
+
+        executeInPages(syncQueryBuilder, maxPageSize, connection,
+                (pageQueryBuilder, pageConnection) -> sync(syncToken, operationOptions, pageConnection,
+                        pageQueryBuilder),
+                objectMap -> {
+
+                    for (String objID : objectMap.keySet()) {
+                        GrouperObject grouperObject = objectMap.get(objID);
+
+                        if (!sync(syncResultsHandler, oClass, grouperObject, syncBudget)) {
+
+                            return false;
+                        }
+                    }
+
+                    return !objectMap.isEmpty();
+                });
+    }
+
+    /**
+     * Executes the query in consecutive pages of the maximal page size, fetching each page with the page fetcher
+     * and handing it over to the page handler. A page failing on a lost connection is fetched again on a new
+     * connection, see {@link ReadRetry}. If a prefetch depth is configured, the following pages are fetched on a
+     * separate connection while the current page is being handled, see {@link PagePrefetcher}.
+     */
+    protected <P> void executeInPages(QueryBuilder queryBuilder, Integer maxPageSize, Connection connection,
+                                      BiFunction<QueryBuilder, Connection, P> pageFetcher,
+                                      Predicate<P> pageHandler) {
+
+        Integer prefetchDepth = configuration.getPrefetchDepth();
+
+        if (prefetchDepth == null || prefetchDepth <= 0) {
+            ReadRetry readRetry = newReadRetry(connection);
+
+            executeInPages(queryBuilder, maxPageSize, () -> pageHandler.test(
+                    readRetry.execute(pageConnection -> pageFetcher.apply(queryBuilder, pageConnection))));
+        } else {
+
+            try {
+
+                new PagePrefetcher<P>(configuration, snapshotId, prefetchDepth).execute(queryBuilder, maxPageSize,
+                        pageFetcher, page -> {
+
+                            getMetrics().recordPage();
+                            return pageHandler.test(page);
+                        });
+            } finally {
+
+                // A page still being prefetched after the handling stopped is not needed anymore
+                cancelStatements();
+            }
+        }
+    }
+
+    /**
+     * Looks one row ahead of a page of a paged search, so that the last page is reported by the remaining paged
+     * results count 0. A page with fewer rows than the page size is the last one, otherwise a single row following
+     * the last object of the page is queried. The lookahead is done only if the search reads an exported snapshot,
+     * which is kept open until the last page.
+     */
+    protected FetchedPage lookAhead(FetchedPage page, QueryBuilder queryBuilder, OperationOptions operationOptions,
+                                    Connection connection) {
+
+        if (snapshotId == null || operationOptions == null || operationOptions.getPageSize() == null) {
+
+            return page;
+        }
+
+        if (page.getRows() < operationOptions.getPageSize() || page.getObjects().isEmpty()) {
+
+            page.setRemainingPagedResults(0);
+            return page;
+        }
+
+        GrouperObject lastObject = null;
+
+        for (GrouperObject grouperObject : page.getObjects().values()) {
+
+            lastObject = grouperObject;
+        }
+
+        OperationOptions lookAheadOptions = new OperationOptionsBuilder(operationOptions).setPageSize(1)
+                .setPagedResultsCookie(buildPagingCookie(lastObject, queryBuilder)).build();
+        String query = buildQuery(queryBuilder.clone(lookAheadOptions));
+
+        try (StatementExecution execution = executeStatement(connection, query,
+                configuration.getSearchQueryTimeout())) {
+
+            if (!execution.next()) {
+
+                page.setRemainingPagedResults(0);
+            }
+        } catch (SQLException e) {
+
+            throw new ExceptionHandler().evaluateAndHandleException(e, true, false,
+                    "Exception occurred while looking ahead of the page, the query: " + query);
+        }
 
-        for (int i = 0; totalRows >= i; i = i + maxPageSize) {
+        return page;
+    }
+
+    /**
+     * Hands the objects of a fetched page over to the handler. Returns false if the handling was interrupted by
+     * the handler. The search result reports the remaining paged results of the page, an empty last page is
+     * reported by a result with no cookie.
+     */
+    protected boolean emitPage(ResultsHandler handler, FetchedPage page, QueryBuilder queryBuilder,
+                               OperationOptions operationOptions) {
+
+        Map<String, GrouperObject> objects = page.getObjects();
+
+        if (objects.isEmpty()) {
+
+            if (page.getRemainingPagedResults() == 0 && handler instanceof SearchResultsHandler) {
+
+                ((SearchResultsHandler) handler).handleResult(new SearchResult(null, 0));
+            }
+
+            return true;
+        }
+
+        String pseudoCookie = null;
+        Integer sizeS = objects.size();
+        Integer processed = 0;
+        boolean interrupted = false;
+
+        for (String objectName : objects.keySet()) {
 
-            syncQueryBuilder.setPageSize(maxPageSize);
-            syncQueryBuilder.setPageOffset(i + 1);
+            GrouperObject go = objects.get(objectName);
 
-            Map<String, GrouperObject> objectMap = sync(syncToken, operationOptions, connection,
-                    syncQueryBuilder);
+            ConnectorObjectBuilder co = buildConnectorObject(getObjectClass(), go, operationOptions);
 
-            for (String objID : objectMap.keySet()) {
-                GrouperObject grouperObject = objectMap.get(objID);
+            pseudoCookie = buildPagingCookie(go, queryBuilder);
 
-                if (!sync(syncResultsHandler, oClass, grouperObject)) {
+            ConnectorObject connectorObject = co.build();
+            boolean handled = handle(getObjectClass(), go.getIdentifier(), () -> handler.handle(connectorObject));
 
-                    break;
+            if (!handled) {
+
+                if (handler instanceof SearchResultsHandler) {
+
+                    LOG.ok("Remaining page results: {0}", sizeS - processed);
+
+                    SearchResult searchResult = new SearchResult(pseudoCookie,
+                            sizeS - processed);
+                    ((SearchResultsHandler) handler).handleResult(searchResult);
                 }
+
+                LOG.warn("Result handling interrupted by handler!");
+                interrupted = true;
+                break;
             }
+            processed++;
+        }
+
+        if (handler instanceof SearchResultsHandler) {
+
+            LOG.ok("Handling results with pseudoCookie: {0}", pseudoCookie);
+
+            SearchResult searchResult = new SearchResult(pseudoCookie,
+                    interrupted ? -1 : page.getRemainingPagedResults());
+            ((SearchResultsHandler) handler).handleResult(searchResult);
+        }
+
+        return !interrupted;
+    }
+
+    /**
+     * Hands an object over to a handler, recording the time spent in the handler.
+     */
+    private boolean handle(ObjectClass objectClass, String uid, BooleanSupplier callback) {
+
+        HandlerCallbackEvent event = new HandlerCallbackEvent();
+        event.begin();
+
+        long startNanos = System.nanoTime();
+        boolean handled = callback.getAsBoolean();
+
+        getMetrics().recordLatency(ConnectorMetrics.PHASE_HANDLER, startNanos);
+        getMetrics().recordObjectEmitted();
+
+        event.end();
+
+        if (event.shouldCommit()) {
+
+            event.objectClass = objectClass.getObjectClassValue();
+            event.uid = uid;
+            event.proceed = handled;
+            event.commit();
+        }
+
+        return handled;
+    }
+
+    /**
+     * Objects fetched by a single query, together with the number of rows the query returned.
+     */
+    protected static class FetchedPage {
+
+        private final Map<String, GrouperObject> objects;
+        private final int rows;
+        private int remainingPagedResults = -1;
+
+        protected FetchedPage(Map<String, GrouperObject> objects, int rows) {
+            this.objects = objects;
+            this.rows = rows;
+        }
+
+        public Map<String, GrouperObject> getObjects() {
+            return objects;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Number of objects following the page, 0 if the page is the last one of a paged search, -1 if unknown.
+         */
+        public int getRemainingPagedResults() {
+            return remainingPagedResults;
+        }
+
+        public void setRemainingPagedResults(int remainingPagedResults) {
+            this.remainingPagedResults = remainingPagedResults;
         }
     }
 }
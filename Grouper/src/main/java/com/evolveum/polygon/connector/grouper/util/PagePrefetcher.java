@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import org.identityconnectors.common.logging.Log;
+
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Executes a query in consecutive pages, fetching the following pages on a separate connection while the current
+ * page is being handled. At most the prefetch depth of pages is fetched ahead of the handled page.
+ * <p>
+ * The pages are fetched one after another by a single {@link ConnectionWorker}.
+ */
+public class PagePrefetcher<P> {
+    private static final Log LOG = Log.getLog(PagePrefetcher.class);
+    private static final String THREAD_NAME = "grouper-page-prefetch";
+
+    private final GrouperConfiguration configuration;
+    private final String snapshotId;
+    private final int prefetchDepth;
+
+    public PagePrefetcher(GrouperConfiguration configuration, String snapshotId, int prefetchDepth) {
+        this.configuration = configuration;
+        this.snapshotId = snapshotId;
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    /**
+     * Fetches the pages of the maximal page size and hands them over to the page handler in order, until the page
+     * handler reports that no further page may follow.
+     */
+    public void execute(QueryBuilder queryBuilder, Integer maxPageSize,
+                        BiFunction<QueryBuilder, Connection, P> pageFetcher, Predicate<P> pageHandler) {
+
+        ConnectionWorker worker = new ConnectionWorker(configuration, snapshotId, THREAD_NAME);
+        Deque<Future<P>> pages = new ArrayDeque<>();
+        int offset = 0;
+
+        try {
+
+            for (int i = 0; i <= prefetchDepth; i++) {
+
+                pages.add(submit(worker, queryBuilder, maxPageSize, offset, pageFetcher));
+                offset = offset + maxPageSize;
+            }
+
+            while (pageHandler.test(ConnectionWorker.await(pages.poll()))) {
+
+                pages.add(submit(worker, queryBuilder, maxPageSize, offset, pageFetcher));
+                offset = offset + maxPageSize;
+            }
+
+        } finally {
+
+            LOG.ok("Finishing page prefetch, discarding {0} prefetched pages", pages.size());
+
+            pages.forEach(page -> page.cancel(false));
+            worker.close();
+        }
+    }
+
+    private Future<P> submit(ConnectionWorker worker, QueryBuilder queryBuilder, Integer maxPageSize, int offset,
+                             BiFunction<QueryBuilder, Connection, P> pageFetcher) {
+
+        QueryBuilder pageQueryBuilder = queryBuilder.clone();
+        pageQueryBuilder.setPageSize(maxPageSize);
+        pageQueryBuilder.setPageOffset(offset + 1);
+
+        return worker.submit(connection -> pageFetcher.apply(pageQueryBuilder, connection));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last returned object in a paged search, consisting of the identifier of the object and, for
+ * sorted searches, the value of the sort column. The identifier is used as a tie breaker for objects sharing the
+ * same sort value.
+ * <p>
+ * The cookie has the versioned form "v1.identifier.sortValue.fingerprint.snapshot[.count]". The sort value is URL
+ * safe Base64 encoded, a missing (null) sort value is represented by "~" and an unsorted search by "!". The
+ * fingerprint identifies the filter and ordering of the search the cookie was issued for, the snapshot is the
+ * identifier of the exported database snapshot the search reads and the count is the number of rows of the whole
+ * search, evaluated on its first page. All three are optional.
+ * <p>
+ * Cookies issued by earlier versions, the plain identifier and "identifier.encodedSortValue", are still accepted.
+ */
+public class PagingCookie {
+
+    private static final String VERSION = "v1";
+    private static final String SEPARATOR = ".";
+    private static final String NULL_VALUE = "~";
+    private static final String UNSORTED = "!";
+
+    private final String sortValue;
+    private final String identifier;
+    private final boolean sorted;
+    private String fingerprint;
+    private String snapshotId;
+    private Integer totalCount;
+
+    public PagingCookie(String sortValue, String identifier) {
+        this(sortValue, identifier, true);
+    }
+
+    private PagingCookie(String sortValue, String identifier, boolean sorted) {
+        this.sortValue = sortValue;
+        this.identifier = identifier;
+        this.sorted = sorted;
+    }
+
+    /**
+     * Position of an object in a search which is not sorted, ordered only by the identifier.
+     */
+    public static PagingCookie unsorted(String identifier) {
+
+        return new PagingCookie(null, identifier, false);
+    }
+
+    public static PagingCookie parse(String cookie) {
+
+        try {
+
+            if (cookie.startsWith(VERSION + SEPARATOR)) {
+
+                String[] parts = cookie.split("\\" + SEPARATOR, -1);
+
+                if (parts.length != 5 && parts.length != 6) {
+
+                    throw new ConnectorException("Malformed paged results cookie: " + cookie);
+                }
+
+                PagingCookie pagingCookie = UNSORTED.equals(parts[2]) ? unsorted(parseIdentifier(parts[1])) :
+                        new PagingCookie(decode(parts[2]), parseIdentifier(parts[1]));
+                pagingCookie.fingerprint = parts[3].isEmpty() ? null : parts[3];
+                pagingCookie.snapshotId = parts[4].isEmpty() ? null : parts[4];
+                pagingCookie.totalCount = parts.length == 6 ? Integer.valueOf(parts[5]) : null;
+
+                return pagingCookie;
+            }
+
+            int separator = cookie.indexOf(SEPARATOR);
+
+            if (separator < 0) {
+
+                return unsorted(parseIdentifier(cookie));
+            }
+
+            return new PagingCookie(decode(cookie.substring(separator + 1)),
+                    parseIdentifier(cookie.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+
+            throw new ConnectorException("Malformed paged results cookie: " + cookie, e);
+        }
+    }
+
+    private static String parseIdentifier(String identifier) {
+
+        return Long.toString(Long.parseLong(identifier));
+    }
+
+    private static String decode(String encodedValue) {
+
+        return NULL_VALUE.equals(encodedValue) ? null :
+                new String(Base64.getUrlDecoder().decode(encodedValue), StandardCharsets.UTF_8);
+    }
+
+    public String getSortValue() {
+        return sortValue;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Returns true if the cookie carries the position of a sorted search.
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public PagingCookie setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+        return this;
+    }
+
+    public String getSnapshotId() {
+        return snapshotId;
+    }
+
+    public PagingCookie setSnapshotId(String snapshotId) {
+        this.snapshotId = snapshotId;
+        return this;
+    }
+
+    public Integer getTotalCount() {
+        return totalCount;
+    }
+
+    public PagingCookie setTotalCount(Integer totalCount) {
+        this.totalCount = totalCount;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+
+        String encodedValue = !sorted ? UNSORTED : sortValue == null ? NULL_VALUE :
+                Base64.getUrlEncoder().withoutPadding().encodeToString(sortValue.getBytes(StandardCharsets.UTF_8));
+
+        return VERSION + SEPARATOR + identifier + SEPARATOR + encodedValue + SEPARATOR
+                + (fingerprint == null ? "" : fingerprint) + SEPARATOR + (snapshotId == null ? "" : snapshotId)
+                + (totalCount == null ? "" : SEPARATOR + totalCount);
+    }
+}
@@ -16,13 +16,19 @@
 
 package com.evolveum.polygon.connector.grouper.util;
 
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.ObjectClass;
 import org.identityconnectors.framework.common.objects.OperationOptions;
-import org.identityconnectors.framework.common.objects.filter.ContainsAllValuesFilter;
+import org.identityconnectors.framework.common.objects.SortKey;
+import org.identityconnectors.framework.common.objects.Uid;
 import org.identityconnectors.framework.common.objects.filter.Filter;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 public class QueryBuilder {
@@ -30,7 +36,6 @@ public class QueryBuilder {
     private static final String _OFFSET = "OFFSET";
     private final String selectTable;
     private static final String _WHERE = "WHERE";
-    private static final String _INNER = "INNER";
     private static final String _LEFT = "LEFT";
     private static final String _JOIN = "JOIN";
     private static final String _ON = "ON";
@@ -41,7 +46,15 @@ public class QueryBuilder {
     private static final String _GREATEST = "GREATEST";
     private static final String _MAX = "MAX";
     private static final String _ASC = "ASC";
-    private static Integer limit;
+    private static final String _DESC = "DESC";
+    private static final String _NULLS_LAST = "NULLS LAST";
+    private static final String _LATERAL = "LATERAL";
+    private static final String _AS = "AS";
+    private static final String _JSONB_OBJECT_AGG = "jsonb_object_agg";
+    private static final String _JSONB_AGG = "jsonb_agg";
+    private static final String _PIVOT_VALUES = "attribute_values";
+    private static final String _DISTINCT = "DISTINCT";
+    private Integer limit;
     private OperationOptions operationOptions = null;
     private final ObjectClass objectClass;
     private String joinStatement;
@@ -49,7 +62,7 @@ public class QueryBuilder {
     private boolean useFullAlias = false;
     private boolean asSyncQuery = false;
 
-    private Set<String> orderByASC = new HashSet<>();
+    private Set<String> orderByASC = new LinkedHashSet<>();
     private Map<String, Map<String, Class>> columns;
 
     private Map<Map<String, String>, String> joinPair;
@@ -63,6 +76,10 @@ public class QueryBuilder {
     private String pageCookie;
     private Filter filter;
     private boolean asCount = false;
+    private String pivotedTable;
+    private boolean pivotExcludeDeleted = false;
+    private GrouperConfiguration configuration;
+    private String searchFingerprint;
 
     public QueryBuilder(ObjectClass objectClass, String selectTable, Integer limit) {
 
@@ -90,22 +107,14 @@ public class QueryBuilder {
                 LOG.ok("Empty query parameter, returning full list of objects of the object class: {0}"
                         , objectClass);
             }
-            this.translatedFilter = null;
         } else {
 
             this.filter = filter;
-            this.translatedFilter = filter.accept(new FilterHandler(),
-                    new ResourceQuery(objectClass, columns));
         }
 
         if (joinPair != null) {
-            if (filter != null && filter instanceof ContainsAllValuesFilter) {
 
-                joinStatement = _INNER + " " + _JOIN;
-            } else {
-
-                joinStatement = _LEFT + " " + _JOIN;
-            }
+            joinStatement = _LEFT + " " + _JOIN;
         }
 
         this.columns = columns;
@@ -120,8 +129,23 @@ public class QueryBuilder {
     }
 
 
+    /**
+     * The filter is translated only once the query is being built, so that the translation can take into account
+     * the configuration set on the builder.
+     */
+    private void translateFilter() {
+
+        if (filter != null && translatedFilter == null) {
+
+            translatedFilter = filter.accept(new FilterHandler(), new ResourceQuery(objectClass, columns,
+                    configuration));
+        }
+    }
+
     public String build() {
 
+        translateFilter();
+
         String statementString = select(columns, selectTable);
 
         if (joinPair != null && !joinPair.isEmpty()) {
@@ -138,6 +162,17 @@ public class QueryBuilder {
                 for (String joinTable : selectTableJoinMap.keySet()) {
 
                     String joinParam = selectTableJoinMap.get(joinTable);
+
+                    if (joinTable.equals(pivotedTable)) {
+                        LOG.ok("Augmenting Select, joining with the pivoted table {0} on the parameter {1}.", joinTable,
+                                joinParam);
+
+                        statementString = statementString + " " + _LEFT + " " + _JOIN + " " + _LATERAL + " ("
+                                + pivot(joinTable, joinParam, selectTableJoinParam) + ") " + _AS + " " + joinTable
+                                + " " + _ON + " TRUE";
+                        continue;
+                    }
+
                     LOG.ok("Augmenting Select, joining with table {0} on the parameter {1}.", joinTable,
                             joinParam);
 
@@ -180,24 +215,45 @@ public class QueryBuilder {
             }
 
 
-            String idAttr = null;
-
-            if (objectClass.is(ObjectProcessing.SUBJECT_NAME)) {
+            String idAttr = getIdAttribute();
+            String sortColumn = asSyncQuery ? null : getSortColumn();
 
-                idAttr = SubjectProcessing.TABLE_SU_NAME + "." + SubjectProcessing.ATTR_UID;
+            if (sortColumn != null) {
 
-            } else if (objectClass.is(ObjectProcessing.GROUP_NAME)) {
-
-                idAttr = GroupProcessing.TABLE_GR_NAME + "." + GroupProcessing.ATTR_UID;
+                String direction = isSortAscending() ? _ASC : _DESC;
 
+                orderByASC = new LinkedHashSet<>();
+                orderByASC.add(selectTable + "." + sortColumn + " " + direction + " " + _NULLS_LAST);
+                orderByASC.add(idAttr + " " + direction);
             }
 
             if (pageSize != null) {
 
                 if (pageCookie != null) {
 
+                    PagingCookie cookie = PagingCookie.parse(pageCookie);
 
-                    statementString = statementString + " " + _WHERE + " " + idAttr + " > " + pageCookie;
+                    if (cookie.getFingerprint() != null && !cookie.getFingerprint().equals(getSearchFingerprint())) {
+
+                        throw new ConnectorException("The paged results cookie " + pageCookie + " was issued for " +
+                                "a search with a different filter or ordering.");
+                    }
+
+                    if (sortColumn != null) {
+
+                        if (!cookie.isSorted()) {
+
+                            throw new ConnectorException("The paged results cookie " + pageCookie + " does not " +
+                                    "contain the position of a sorted search.");
+                        }
+
+                        statementString = statementString + " " + _WHERE + " "
+                                + keysetCondition(sortColumn, idAttr, cookie);
+                    } else {
+
+                        statementString = statementString + " " + _WHERE + " " + idAttr + " > "
+                                + cookie.getIdentifier();
+                    }
 
                     if (translatedFilter != null) {
 
@@ -229,7 +285,7 @@ public class QueryBuilder {
                             + pageSize + ".Page cookie:  " + pageCookie + ". PageOffset: " + pageOffset);
                 }
 
-            } else {
+            } else if (translatedFilter != null) {
 
                 statementString = statementString + " " + _WHERE + " " + translatedFilter.getCurrentQuerySnippet();
             }
@@ -326,6 +382,137 @@ public class QueryBuilder {
         return statementString;
     }
 
+    private String getIdAttribute() {
+
+        if (objectClass.is(ObjectProcessing.SUBJECT_NAME)) {
+
+            return SubjectProcessing.TABLE_SU_NAME + "." + SubjectProcessing.ATTR_UID;
+
+        } else if (objectClass.is(ObjectProcessing.GROUP_NAME)) {
+
+            return GroupProcessing.TABLE_GR_NAME + "." + GroupProcessing.ATTR_UID;
+        }
+
+        return null;
+    }
+
+    /**
+     * Resolves the column of the selected table by which the results are sorted, based on the first sort key of
+     * the operation options. Returns null if no sort key is requested or if it does not refer to a column of the
+     * selected table.
+     */
+    public String getSortColumn() {
+
+        if (operationOptions == null || operationOptions.getSortKeys() == null
+                || operationOptions.getSortKeys().length == 0) {
+
+            return null;
+        }
+
+        SortKey[] sortKeys = operationOptions.getSortKeys();
+        String field = sortKeys[0].getField();
+
+        if (sortKeys.length > 1) {
+
+            LOG.warn("Only the first sort key is supported, sorting by {0} only.", field);
+        }
+
+        String column;
+
+        if (Uid.NAME.equals(field)) {
+
+            column = objectClass.is(ObjectProcessing.GROUP_NAME) ? GroupProcessing.ATTR_UID :
+                    SubjectProcessing.ATTR_UID;
+        } else if (Name.NAME.equals(field)) {
+
+            column = objectClass.is(ObjectProcessing.GROUP_NAME) ? GroupProcessing.ATTR_NAME :
+                    SubjectProcessing.ATTR_NAME;
+        } else {
+
+            column = field;
+        }
+
+        if (columns == null || columns.get(selectTable) == null || !columns.get(selectTable).containsKey(column)) {
+
+            LOG.warn("The sort key {0} does not refer to a column of the table {1}, sort key ignored.", field,
+                    selectTable);
+            return null;
+        }
+
+        return column;
+    }
+
+    private boolean isSortAscending() {
+
+        return operationOptions.getSortKeys()[0].isAscendingOrder();
+    }
+
+    /**
+     * Identifies the filter and ordering of the search, so that a paged results cookie can be matched with the
+     * search it was issued for.
+     */
+    public String getSearchFingerprint() {
+
+        if (searchFingerprint != null) {
+
+            return searchFingerprint;
+        }
+
+        translateFilter();
+
+        String sortColumn = asSyncQuery ? null : getSortColumn();
+        String search = objectClass.getObjectClassValue() + "|"
+                + (translatedFilter != null ? translatedFilter.getCurrentQuerySnippet() : "") + "|"
+                + (sortColumn != null ? sortColumn + " " + (isSortAscending() ? _ASC : _DESC) : "");
+
+        try {
+
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(search.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder fingerprint = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+
+                fingerprint.append(String.format("%02x", digest[i]));
+            }
+
+            searchFingerprint = fingerprint.toString();
+
+            return searchFingerprint;
+        } catch (NoSuchAlgorithmException e) {
+
+            throw new ConnectorException("Exception while evaluating the search fingerprint", e);
+        }
+    }
+
+    /**
+     * Condition selecting the objects following the position stored in the cookie, in the order given by the sort
+     * column and the identifier. Objects with no sort value are ordered last.
+     */
+    private String keysetCondition(String sortColumn, String idAttr, PagingCookie cookie) {
+
+        String column = selectTable + "." + sortColumn;
+        String comparison = isSortAscending() ? " > " : " < ";
+        String identifier = idAttr + comparison + cookie.getIdentifier();
+
+        if (cookie.getSortValue() == null) {
+
+            return "(" + column + " IS NULL AND " + identifier + ")";
+        }
+
+        String value = cookie.getSortValue();
+
+        if (!Long.class.equals(columns.get(selectTable).get(sortColumn))) {
+
+            value = "'" + value.replace("'", "''") + "'";
+        } else {
+
+            value = Long.toString(Long.parseLong(value));
+        }
+
+        return "(" + column + comparison + value + " OR (" + column + " = " + value + " AND " + identifier + ") OR "
+                + column + " IS NULL)";
+    }
+
     private String select(Map<String, Map<String, Class>> tablesAndColumns, String selectTable) {
 
         if (selectTable != null && !selectTable.isEmpty()) {
@@ -408,6 +595,30 @@ public class QueryBuilder {
         return ret.toString();
     }
 
+    /**
+     * Aggregates the extension attribute rows of an object into a single JSON object, mapping each attribute name to
+     * the array of all its values, e.g. {"ext_a": ["x", "y"]}.
+     */
+    private String pivot(String joinTable, String joinParam, String selectTableJoinParam) {
+
+        String valuesSelect = "SELECT " + ObjectProcessing.ATTR_EXT_NAME + ", " + _JSONB_AGG + "("
+                + ObjectProcessing.ATTR_EXT_VALUE + ") " + _AS + " " + _PIVOT_VALUES + " FROM " + joinTable + " "
+                + _WHERE + " " + joinTable + "." + joinParam + " = " + selectTable + "." + selectTableJoinParam
+                + " AND " + joinTable + "." + ObjectProcessing.ATTR_EXT_NAME + " IS NOT NULL";
+
+        if (pivotExcludeDeleted) {
+
+            valuesSelect = valuesSelect + " AND " + joinTable + "." + ObjectProcessing.ATTR_DELETED
+                    + " IS DISTINCT FROM '" + ObjectProcessing.ATTR_DELETED_TRUE + "'";
+        }
+
+        valuesSelect = valuesSelect + " " + _GROUP_BY + " " + ObjectProcessing.ATTR_EXT_NAME;
+
+        return "SELECT " + _JSONB_OBJECT_AGG + "(" + ObjectProcessing.ATTR_EXT_NAME + ", " + _PIVOT_VALUES + ") "
+                + _AS + " " + ObjectProcessing.ATTR_EXT_ATTRIBUTES + " FROM (" + valuesSelect + ") " + _AS + " "
+                + _PIVOT_VALUES;
+    }
+
     private String buildOneFromMany(Set<String> modColumns) {
         String out = _GREATEST + "(";
 
@@ -438,6 +649,31 @@ public class QueryBuilder {
         return statementString;
     }
 
+    public String buildDistinctQuery(String column) {
+
+        return buildSingleColumnQuery(_DISTINCT + " " + column);
+    }
+
+    public String buildMaxQuery(String column) {
+
+        return buildSingleColumnQuery(_MAX + "(" + column + ")");
+    }
+
+    private String buildSingleColumnQuery(String selectExpression) {
+
+        translateFilter();
+
+        String statementString = "SELECT " + selectExpression + " FROM " + selectTable;
+
+        if (translatedFilter != null) {
+
+            statementString = statementString + " " + _WHERE + " " + translatedFilter.getCurrentQuerySnippet();
+        }
+
+        LOG.ok("Using the following statement string in the select statement: {0}", statementString);
+        return statementString;
+    }
+
     public void setUseFullAlias(boolean useFullAlias) {
         this.useFullAlias = useFullAlias;
     }
@@ -454,6 +690,19 @@ public class QueryBuilder {
         this.inStatement = inStatement;
     }
 
+    /**
+     * The joined table will be aggregated into a single JSON object column per object, instead of contributing one
+     * row per name-value pair. The columns selected from the table have to be the pivoted column.
+     */
+    public void setPivotedTable(String pivotedTable, boolean excludeDeleted) {
+        this.pivotedTable = pivotedTable;
+        this.pivotExcludeDeleted = excludeDeleted;
+    }
+
+    public void setConfiguration(GrouperConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
     public void setPageSize(Integer pageSize) {
         this.pageSize = pageSize;
     }
@@ -464,12 +713,22 @@ public class QueryBuilder {
 
     public QueryBuilder clone() {
 
+        return clone(operationOptions);
+    }
+
+    /**
+     * Clones the query builder, replacing its operation options, e.g. to query a different page of the search.
+     */
+    public QueryBuilder clone(OperationOptions operationOptions) {
+
         QueryBuilder clone = new QueryBuilder(objectClass, filter, columns, selectTable,
                 joinPair, operationOptions, limit);
 
         clone.setAsSyncQuery(asSyncQuery);
         clone.setOrderByASC(orderByASC);
         clone.setUseFullAlias(useFullAlias);
+        clone.setPivotedTable(pivotedTable, pivotExcludeDeleted);
+        clone.setConfiguration(configuration);
 
         return clone;
     }
@@ -479,6 +738,19 @@ public class QueryBuilder {
         this.asCount = true;
     }
 
+    public String getSelectTable() {
+        return selectTable;
+    }
+
+    /**
+     * Returns true if the query reads all rows of the select table without any filter or join.
+     */
+    public boolean isUnfilteredScan() {
+
+        return filter == null && (inStatement == null || inStatement.isEmpty())
+                && (joinPair == null || joinPair.isEmpty()) && pivotedTable == null;
+    }
+
     public Integer getTotalCount() {
         return totalCount;
     }
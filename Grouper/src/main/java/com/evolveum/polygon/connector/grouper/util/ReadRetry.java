@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Repeats reads failing on a lost connection or another transient failure, see
+ * {@link ExceptionHandler#isTransient(Throwable)}. Before each retry the read waits for a randomized delay, doubling
+ * with every attempt, and the connection is replaced by a new one. The following reads of the same operation use the
+ * new connection.
+ * <p>
+ * A read has to be idempotent and must not hand any object over to a handler, e.g. the fetching of a single page.
+ * Paged reads are therefore retried from the page they failed on, since the position of the page is kept by the query
+ * builder. Reads within a transaction, i.e. a consistent snapshot, are not retried, as the snapshot is lost with
+ * the connection.
+ */
+public class ReadRetry {
+    private static final Log LOG = Log.getLog(ReadRetry.class);
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+
+    private final int attempts;
+    private final long backoffMillis;
+    private final Supplier<Connection> reconnect;
+    private final ConnectorMetrics metrics;
+    private final boolean inTransaction;
+    private Connection connection;
+
+    public ReadRetry(GrouperConfiguration configuration, Connection connection, Supplier<Connection> reconnect,
+                     ConnectorMetrics metrics) {
+        this.attempts = configuration.getReadRetryAttempts() != null ? configuration.getReadRetryAttempts() : 0;
+        this.backoffMillis = configuration.getReadRetryBackoff() != null ? configuration.getReadRetryBackoff() : 1000;
+        this.reconnect = reconnect;
+        this.metrics = metrics;
+        this.connection = connection;
+        this.inTransaction = isInTransaction(connection);
+    }
+
+    public <T> T execute(Function<Connection, T> read) {
+
+        RuntimeException failure = null;
+
+        for (int attempt = 0; ; attempt++) {
+
+            try {
+
+                if (failure != null) {
+
+                    connection = reconnect.get();
+                }
+
+                return read.apply(connection);
+            } catch (RuntimeException e) {
+
+                if (reconnect == null || inTransaction || attempt >= attempts || !ExceptionHandler.isTransient(e)) {
+
+                    throw e;
+                }
+
+                failure = e;
+                long maxDelay = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(attempt, 16));
+                long delay = maxDelay / 2 + ThreadLocalRandom.current().nextLong(maxDelay / 2 + 1);
+
+                LOG.warn("Transient failure of a read, retrying on a new connection in {0} ms, attempt {1} of {2}: "
+                        + "{3}", delay, attempt + 1, attempts, e.getLocalizedMessage());
+                metrics.recordReadRetry();
+
+                sleep(delay, e);
+            }
+        }
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    private static boolean isInTransaction(Connection connection) {
+
+        try {
+
+            return connection != null && !connection.getAutoCommit();
+        } catch (SQLException e) {
+
+            return false;
+        }
+    }
+
+    private static void sleep(long delay, RuntimeException failure) {
+
+        try {
+
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new ConnectorException("Interrupted while waiting to retry a read", failure);
+        }
+    }
+}
@@ -16,10 +16,13 @@
 
 package com.evolveum.polygon.connector.grouper.util;
 
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.objects.ObjectClass;
 
+import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
 
 public class ResourceQuery {
     private static final Log LOG = Log.getLog(ResourceQuery.class);
@@ -27,11 +30,19 @@ public class ResourceQuery {
     private Map<String, Map<String, Class>> columnInformation;
     private String currentQuerySnippet = null;
     private boolean isComposite = false;
+    private GrouperConfiguration configuration;
 
     public ResourceQuery(ObjectClass objectClass, Map<String, Map<String, Class>> columnInformation) {
 
+        this(objectClass, columnInformation, null);
+    }
+
+    public ResourceQuery(ObjectClass objectClass, Map<String, Map<String, Class>> columnInformation,
+                         GrouperConfiguration configuration) {
+
         this.objectClass = objectClass;
         this.columnInformation = columnInformation;
+        this.configuration = configuration;
     }
     public ObjectClass getObjectClass() {
         return objectClass;
@@ -41,6 +52,10 @@ public class ResourceQuery {
         return columnInformation;
     }
 
+    public GrouperConfiguration getConfiguration() {
+        return configuration;
+    }
+
     public String getCurrentQuerySnippet() {
         return currentQuerySnippet;
     }
@@ -49,24 +64,27 @@ public class ResourceQuery {
         this.currentQuerySnippet = currentQuerySnippet;
     }
 
-    public void add(ResourceQuery resourceQuery, String operator) {
+    /**
+     * Joins the snippets of the supplied queries with the operator in a single pass. Snippets of composite queries
+     * are enclosed in parentheses.
+     */
+    public void addAll(List<ResourceQuery> resourceQueries, String operator) {
 
-        if (getCurrentQuerySnippet() != null) {
+        StringJoiner joiner = new StringJoiner(" " + operator + " ");
 
-            if (!resourceQuery.isComposite) {
+        if (getCurrentQuerySnippet() != null) {
 
-                setCurrentQuerySnippet(resourceQuery.getCurrentQuerySnippet() + " " + operator +
-                        " (" + getCurrentQuerySnippet() + ")");
-            } else {
+            joiner.add("(" + getCurrentQuerySnippet() + ")");
+        }
 
-                setCurrentQuerySnippet("(" + resourceQuery.getCurrentQuerySnippet() + ")" + " " + operator +
-                        " (" + getCurrentQuerySnippet() + ")");
-            }
-        } else {
+        for (ResourceQuery resourceQuery : resourceQueries) {
 
-            setCurrentQuerySnippet(resourceQuery.getCurrentQuerySnippet());
+            joiner.add(resourceQuery.isComposite ? "(" + resourceQuery.getCurrentQuerySnippet() + ")" :
+                    resourceQuery.getCurrentQuerySnippet());
         }
 
+        setCurrentQuerySnippet(joiner.length() > 0 ? joiner.toString() : null);
+
         LOG.ok("Query builder value after augmentation: {0}", getCurrentQuerySnippet());
     }
 
@@ -25,10 +25,50 @@ import org.identityconnectors.framework.common.objects.SchemaBuilder;
 import org.identityconnectors.framework.spi.operations.SearchOp;
 import org.identityconnectors.framework.spi.operations.SyncOp;
 
+import java.util.*;
+
 public class SchemaTranslator {
     private static final Log LOG = Log.getLog(SchemaTranslator.class);
+    private static final int MAX_CACHED_SCHEMAS = 16;
+
+    /**
+     * Schemas already generated by any connector instance, keyed by the fingerprint of the configuration
+     * properties the schema depends on. Least recently used schemas are evicted first.
+     */
+    private static final Map<List<Object>, Schema> SCHEMA_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<>(MAX_CACHED_SCHEMAS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, Schema> eldest) {
+                    return size() > MAX_CACHED_SCHEMAS;
+                }
+            });
 
     public Schema generateSchema(GrouperConfiguration configuration) {
+        List<Object> fingerprint = fingerprint(configuration);
+        Schema schema = SCHEMA_CACHE.get(fingerprint);
+
+        if (schema != null) {
+
+            LOG.ok("Using cached schema object for the configuration fingerprint {0}", fingerprint);
+            return schema;
+        }
+
+        schema = buildSchema(configuration);
+        SCHEMA_CACHE.put(fingerprint, schema);
+
+        return schema;
+    }
+
+    private List<Object> fingerprint(GrouperConfiguration configuration) {
+        String[] extendedGroupProperties = configuration.getExtendedGroupProperties();
+        String[] extendedSubjectProperties = configuration.getExtendedSubjectProperties();
+
+        return Arrays.asList(configuration.getTablePrefix(), configuration.getEnableIdBasedPaging(),
+                extendedGroupProperties != null ? List.of(extendedGroupProperties) : null,
+                extendedSubjectProperties != null ? List.of(extendedSubjectProperties) : null);
+    }
+
+    private Schema buildSchema(GrouperConfiguration configuration) {
         LOG.info("Generating schema object");
 
         SchemaBuilder schemaBuilder = new SchemaBuilder(GrouperConnector.class);
@@ -45,6 +85,7 @@ public class SchemaTranslator {
 
         schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildAttributesToGet());
         schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildReturnDefaultAttributes());
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildSortKeys());
 
         if (configuration.getEnableIdBasedPaging()) {
 
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded log of the latest slow queries of a resource. The oldest entry is dropped once the log is full.
+ */
+public class SlowQueryLog {
+
+    private static final int MAX_SIZE = 100;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    public synchronized void add(Entry entry) {
+
+        if (entries.size() >= MAX_SIZE) {
+
+            entries.removeFirst();
+        }
+
+        entries.addLast(entry);
+    }
+
+    public synchronized String[] toArray() {
+
+        return entries.stream().map(Entry::toString).toArray(String[]::new);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * A slow query, identified by its shape, i.e. the statement with the literals replaced by their types.
+     */
+    public static class Entry {
+
+        private final Instant timestamp;
+        private final long durationMillis;
+        private final int rows;
+        private final String objectClass;
+        private final String shape;
+        private final List<String> parameterTypes;
+        private final String plan;
+
+        public Entry(long durationMillis, int rows, String objectClass, String shape, List<String> parameterTypes,
+                     String plan) {
+            this.timestamp = Instant.now();
+            this.durationMillis = durationMillis;
+            this.rows = rows;
+            this.objectClass = objectClass;
+            this.shape = shape;
+            this.parameterTypes = parameterTypes;
+            this.plan = plan;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public List<String> getParameterTypes() {
+            return parameterTypes;
+        }
+
+        public String getPlan() {
+            return plan;
+        }
+
+        @Override
+        public String toString() {
+
+            return timestamp + " duration=" + durationMillis + "ms rows=" + rows + " objectClass=" + objectClass
+                    + " parameterTypes=" + parameterTypes + " query=" + shape + (plan != null ? " plan=" + plan : "");
+        }
+    }
+}
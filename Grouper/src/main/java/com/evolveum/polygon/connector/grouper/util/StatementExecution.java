@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A query executed by the connector, together with its result set. The rows have to be iterated by
+ * {@link #next()}, which measures the time to the first row and the time needed to drain the result set. Closing
+ * the execution closes the result set and the statement. While the execution is open, its statement is registered in
+ * the {@link ActiveStatements} of the processing, so that it can be cancelled.
+ * <p>
+ * If enabled, the flight recorder events {@link SqlExecutionEvent} and {@link ObjectAssemblyEvent} are emitted for
+ * the execution. If the execution takes longer than the slow query threshold, the query is recorded in the
+ * {@link SlowQueryLog} of the resource, optionally together with its plan.
+ */
+public class StatementExecution implements AutoCloseable {
+    private static final Log LOG = Log.getLog(StatementExecution.class);
+    private static final Pattern LITERALS = Pattern.compile("'(?:[^']|'')*'|\\b\\d+\\b");
+
+    private final Connection connection;
+    private final GrouperConfiguration configuration;
+    private final String query;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final ConnectorMetrics metrics;
+    private final ObjectClass objectClass;
+    private final AdmissionControl admissionControl;
+    private final Integer queryTimeout;
+    private final ActiveStatements activeStatements;
+    private final SqlExecutionEvent executionEvent;
+    private final long startNanos;
+    private final long executedNanos;
+
+    private ObjectAssemblyEvent assemblyEvent;
+    private int rows = 0;
+    private boolean recorded = false;
+
+    private StatementExecution(Connection connection, GrouperConfiguration configuration, String query,
+                               PreparedStatement statement, ResultSet resultSet, ConnectorMetrics metrics,
+                               ObjectClass objectClass, AdmissionControl admissionControl, Integer queryTimeout,
+                               ActiveStatements activeStatements, SqlExecutionEvent executionEvent,
+                               long startNanos) {
+        this.connection = connection;
+        this.configuration = configuration;
+        this.query = query;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.metrics = metrics;
+        this.objectClass = objectClass;
+        this.admissionControl = admissionControl;
+        this.queryTimeout = queryTimeout;
+        this.activeStatements = activeStatements;
+        this.executionEvent = executionEvent;
+        this.startNanos = startNanos;
+        this.executedNanos = System.nanoTime();
+    }
+
+    /**
+     * Executes the query. If an admission control is given, the execution waits for its admission and the permit is
+     * released once the statement returns, as the rows are then already fetched from the database. If a query
+     * timeout in seconds is given, the database cancels the statement running longer.
+     */
+    public static StatementExecution execute(Connection connection, GrouperConfiguration configuration, String query,
+                                             ConnectorMetrics metrics, ObjectClass objectClass,
+                                             AdmissionControl admissionControl, Integer queryTimeout,
+                                             ActiveStatements activeStatements) throws SQLException {
+
+        PreparedStatement statement = connection.prepareStatement(query);
+        activeStatements.add(statement);
+
+        try (AdmissionControl.Permit permit = admissionControl != null ? admissionControl.acquire(metrics) : null) {
+
+            if (queryTimeout != null && queryTimeout > 0) {
+
+                statement.setQueryTimeout(queryTimeout);
+            }
+
+            SqlExecutionEvent executionEvent = new SqlExecutionEvent();
+            executionEvent.begin();
+
+            long startNanos = System.nanoTime();
+            ResultSet resultSet = statement.executeQuery();
+            metrics.recordLatency(ConnectorMetrics.PHASE_EXECUTE, startNanos);
+
+            return new StatementExecution(connection, configuration, query, statement, resultSet, metrics,
+                    objectClass, admissionControl, queryTimeout, activeStatements, executionEvent, startNanos);
+        } catch (SQLException | RuntimeException e) {
+
+            activeStatements.remove(statement);
+            statement.close();
+            throw e;
+        }
+    }
+
+    public ResultSet getResultSet() {
+        return resultSet;
+    }
+
+    public boolean next() throws SQLException {
+
+        if (!resultSet.next()) {
+
+            record();
+            return false;
+        }
+
+        if (rows == 0) {
+
+            metrics.recordLatency(ConnectorMetrics.PHASE_FIRST_ROW, executedNanos);
+
+            ObjectAssemblyEvent event = new ObjectAssemblyEvent();
+
+            if (event.isEnabled()) {
+
+                event.begin();
+                assemblyEvent = event;
+            }
+        }
+
+        rows++;
+        return true;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Reports the number of objects assembled from the rows of the drained result set.
+     */
+    public void assembled(int objects) {
+
+        if (assemblyEvent != null) {
+
+            assemblyEvent.end();
+
+            if (assemblyEvent.shouldCommit()) {
+
+                assemblyEvent.rows = rows;
+                assemblyEvent.objects = objects;
+                assemblyEvent.objectClass = getObjectClassName();
+                assemblyEvent.commit();
+            }
+
+            assemblyEvent = null;
+        }
+    }
+
+    /**
+     * Hash of the statement with its literals replaced, identifying statements which differ only in the values
+     * they are filtered by.
+     */
+    public static String getShapeHash(String query) {
+
+        return Integer.toHexString(LITERALS.matcher(query).replaceAll("?").hashCode());
+    }
+
+    private String getObjectClassName() {
+        return objectClass != null ? objectClass.getObjectClassValue() : null;
+    }
+
+    private void record() {
+
+        if (!recorded) {
+
+            recorded = true;
+            metrics.recordLatency(ConnectorMetrics.PHASE_DRAIN, executedNanos);
+            metrics.recordStatement(rows);
+
+            executionEvent.end();
+
+            if (executionEvent.shouldCommit()) {
+
+                executionEvent.shapeHash = getShapeHash(query);
+                executionEvent.rows = rows;
+                executionEvent.objectClass = getObjectClassName();
+                executionEvent.commit();
+            }
+
+            Integer slowQueryThreshold = configuration.getSlowQueryThreshold();
+            long durationMillis = (System.nanoTime() - startNanos) / 1000000;
+
+            if (slowQueryThreshold != null && durationMillis >= slowQueryThreshold) {
+
+                recordSlowQuery(durationMillis);
+            }
+        }
+    }
+
+    private void recordSlowQuery(long durationMillis) {
+
+        Matcher matcher = LITERALS.matcher(query);
+        StringBuilder shape = new StringBuilder();
+        List<String> parameterTypes = new ArrayList<>();
+
+        while (matcher.find()) {
+
+            parameterTypes.add(matcher.group().startsWith("'") ? "varchar" : "numeric");
+            matcher.appendReplacement(shape, "?");
+        }
+
+        matcher.appendTail(shape);
+
+        LOG.info("Slow query executed in {0} ms, returning {1} rows: {2}", durationMillis, rows, shape);
+
+        String plan = null;
+
+        if (configuration.getSlowQueryExplain() != null && configuration.getSlowQueryExplain()) {
+
+            Integer analyzePercentage = configuration.getSlowQueryAnalyzePercentage();
+
+            plan = explain(analyzePercentage != null
+                    && ThreadLocalRandom.current().nextInt(100) < analyzePercentage);
+        }
+
+        metrics.getSlowQueryLog().add(new SlowQueryLog.Entry(durationMillis, rows, getObjectClassName(),
+                shape.toString(), parameterTypes, plan));
+    }
+
+    /**
+     * Evaluates the plan of the query. Within a transaction the plan is evaluated in a savepoint, so that a failure
+     * does not abort the transaction. The explain statement is executed as the query itself, it waits for its
+     * admission, is cancelled by the database after the query timeout and can be cancelled with the statements of
+     * the processing.
+     */
+    private String explain(boolean analyze) {
+
+        String explainQuery = (analyze ? "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " : "EXPLAIN (FORMAT JSON) ") + query;
+        Savepoint savepoint = null;
+
+        try {
+
+            if (!connection.getAutoCommit()) {
+
+                savepoint = connection.setSavepoint();
+            }
+
+            String plan = null;
+
+            try (AdmissionControl.Permit permit = admissionControl != null ? admissionControl.acquire(metrics) : null;
+                 PreparedStatement explainStatement = connection.prepareStatement(explainQuery)) {
+
+                activeStatements.add(explainStatement);
+
+                try {
+
+                    if (queryTimeout != null && queryTimeout > 0) {
+
+                        explainStatement.setQueryTimeout(queryTimeout);
+                    }
+
+                    try (ResultSet result = explainStatement.executeQuery()) {
+
+                        if (result.next()) {
+
+                            plan = result.getString(1);
+                        }
+                    }
+                } finally {
+
+                    activeStatements.remove(explainStatement);
+                }
+            }
+
+            if (savepoint != null) {
+
+                connection.releaseSavepoint(savepoint);
+            }
+
+            return plan;
+        } catch (SQLException e) {
+
+            LOG.warn("The plan of the slow query could not be evaluated: {0}", e.getLocalizedMessage());
+
+            if (savepoint != null) {
+
+                try {
+
+                    connection.rollback(savepoint);
+                } catch (SQLException rollbackException) {
+
+                    LOG.warn("Exception while rolling back to the savepoint: {0}",
+                            rollbackException.getLocalizedMessage());
+                }
+            }
+
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+
+        record();
+
+        try {
+
+            resultSet.close();
+        } finally {
+
+            activeStatements.remove(statement);
+            statement.close();
+        }
+    }
+}
@@ -41,7 +41,7 @@ public class SubjectProcessing extends ObjectProcessing {
     protected static final String ATTR_MEMBER_OF_NATIVE = ATTR_GR_ID_IDX;
 
     protected static String TABLE_SU_NAME = null;
-    private static String TABLE_SU_EXTENSION_NAME = null;
+    protected static String TABLE_SU_EXTENSION_NAME = null;
     protected Set<String> multiValuedAttributesCatalogue = new HashSet();
     protected Map<String, Class> columns = new HashMap<>();
     protected Map<String, Class> suMembershipColumns = Map.ofEntries(
@@ -135,12 +135,19 @@ public class SubjectProcessing extends ObjectProcessing {
         Boolean isAllQuery = !(filter != null);
         Boolean isPagedSearch = false;
         Integer maxPageSize = configuration.getMaxPageSize();
-        Integer pageSize = null;
 
         if (filter != null && filter instanceof EqualsFilter) {
 
             if (((EqualsFilter) filter).getAttribute().getName().equals(Uid.NAME)) {
                 isEqualsUid = true;
+                setUidLookup(true);
+
+                handler = readThroughObjectCache((EqualsFilter) filter, handler, operationOptions, connection);
+
+                if (handler == null) {
+
+                    return;
+                }
             }
         }
 
@@ -157,14 +164,6 @@ public class SubjectProcessing extends ObjectProcessing {
                 LOG.ok("Augmenting filter {0}, " +
                         "with DELETED=F argument based on the exclude delete objects property value", filter);
 
-                if (filter instanceof ContainsAllValuesFilter){
-
-                    EqualsFilter equalsMembFilter = (EqualsFilter) FilterBuilder.equalTo(AttributeBuilder.build(
-                            TABLE_MEMBERSHIP_NAME + "." + ATTR_DELETED, "F"));
-
-                    filter = FilterBuilder.and(equalsMembFilter, filter);
-                }
-
                 EqualsFilter equalsFilter = (EqualsFilter) FilterBuilder.equalTo(AttributeBuilder.build(
                         TABLE_SU_NAME + "." + ATTR_DELETED, "F"));
 
@@ -196,7 +195,8 @@ public class SubjectProcessing extends ObjectProcessing {
 
             if (getAttributesToGet(operationOptions).stream().anyMatch(atg -> extended.contains(atg))) {
 
-                tablesAndColumns.put(TABLE_SU_EXTENSION_NAME, extensionColumns);
+                tablesAndColumns.put(TABLE_SU_EXTENSION_NAME, configuration.getPivotExtensionAttributes() ?
+                        pivotedExtensionColumns : extensionColumns);
                 joinMap.put(Map.of(TABLE_SU_EXTENSION_NAME, ATTR_SCT_ID_IDX), ATTR_ID_IDX);
             }
 
@@ -209,56 +209,76 @@ public class SubjectProcessing extends ObjectProcessing {
                     TABLE_SU_NAME, operationOptions);
         }
         queryBuilder.setUseFullAlias(true);
-        Integer count = null;
-        if (maxPageSize != null && !isEqualsUid) {
+        queryBuilder.setConfiguration(configuration);
 
-            if (pageSize != null) {
+        if (configuration.getPivotExtensionAttributes()) {
 
-                if (pageSize > maxPageSize) {
-
-                    count = countAll(queryBuilder.clone(), connection);
-                    queryBuilder.setTotalCount(count);
-                }
-            } else {
-
-                count = countAll(queryBuilder.clone(), connection);
-                queryBuilder.setTotalCount(count);
-            }
+            queryBuilder.setPivotedTable(TABLE_SU_EXTENSION_NAME, configuration.getExcludeDeletedObjects());
         }
 
-        if (count == null) {
+        boolean isPaged = !isEqualsUid && exceedsMaxPageSize(operationOptions);
+
+        if (!isPaged) {
 
             handleExecuteQuery(handler, connection, queryBuilder, isAllQuery, isPagedSearch, operationOptions);
 
         } else {
-            if (count < maxPageSize) {
 
-                handleExecuteQuery(handler, connection, queryBuilder, isAllQuery, isPagedSearch, operationOptions);
-            } else {
-                for (int i = 0; count >= i; i = i + maxPageSize) {
+            // The count is only reported, an estimated count or one evaluated for an earlier page might be lower
+            // than the current number of rows, so the pages are fetched until a page is not full
+            queryBuilder.setTotalCount(countSearchRows(queryBuilder, operationOptions, connection));
 
-                    queryBuilder.setPageSize(maxPageSize);
-                    queryBuilder.setPageOffset(i + 1);
+            ResultsHandler pageHandler = handler;
+            QueryBuilder pagedQueryBuilder = queryBuilder;
+            Boolean isPagedSearchQuery = isPagedSearch;
 
-                    handleExecuteQuery(handler, connection, queryBuilder, isAllQuery, isPagedSearch, operationOptions);
-                }
-            }
+            executeInPages(pagedQueryBuilder, maxPageSize, connection,
+                    (pageQueryBuilder, pageConnection) -> fetchPage(pageConnection, pageQueryBuilder,
+                            isPagedSearchQuery, operationOptions),
+                    page -> {
+
+                        if (page.getRows() < maxPageSize) {
+
+                            page.setRemainingPagedResults(0);
+                        }
+
+                        return emitPage(pageHandler, page, pagedQueryBuilder, operationOptions)
+                                && page.getRows() >= maxPageSize;
+                    });
         }
     }
 
-    protected void handleExecuteQuery(ResultsHandler handler, Connection connection, QueryBuilder queryBuilder,
-                                      Boolean isAllQuery, Boolean isPagedSearch, OperationOptions operationOptions) {
+    /**
+     * Executes the query and handles the resulting objects. Returns the number of fetched rows, or 0 if the
+     * handling was interrupted by the handler.
+     */
+    protected int handleExecuteQuery(ResultsHandler handler, Connection connection, QueryBuilder queryBuilder,
+                                     Boolean isAllQuery, Boolean isPagedSearch, OperationOptions operationOptions) {
+
+        FetchedPage page = newReadRetry(connection).execute(pageConnection -> lookAhead(fetchPage(pageConnection,
+                queryBuilder, isPagedSearch, operationOptions), queryBuilder, operationOptions, pageConnection));
+
+        return emitPage(handler, page, queryBuilder, operationOptions) ? page.getRows() : 0;
+    }
+
+    /**
+     * Executes the query and merges the returned rows into objects, without handling them.
+     */
+    protected FetchedPage fetchPage(Connection connection, QueryBuilder queryBuilder, Boolean isPagedSearch,
+                                    OperationOptions operationOptions) {
+
         ResultSet result;
-        String query = queryBuilder.build();
+        String query = buildQuery(queryBuilder);
 
         LOG.info("Query about to be executed: {0}", query);
-        Map<String, GrouperObject> objects = new HashMap<>();
-        try {
-
-            PreparedStatement prepareStatement = connection.prepareStatement(query);
-            result = prepareStatement.executeQuery();
+        Map<String, GrouperObject> objects = new LinkedHashMap<>();
+        int rows = 0;
+        try (StatementExecution execution = executeStatement(connection, query,
+                configuration.getSearchQueryTimeout())) {
+            result = execution.getResultSet();
 
-            while (result.next()) {
+            while (execution.next()) {
+                rows++;
 
                 GrouperObject go = buildGrouperObject(ATTR_UID, ATTR_NAME, result, objectConstructionSchema,
                         multiValuedAttributesCatalogue, Map.of(ATTR_MEMBER_OF_NATIVE, ATTR_MEMBER_OF));
@@ -290,58 +310,14 @@ public class SubjectProcessing extends ObjectProcessing {
                 }
             }
 
-            String pseudoCookie = null;
+            execution.assembled(objects.size());
+
             if (objects.isEmpty()) {
                 LOG.ok("Empty object set in execute query");
-            } else {
-
-                if (isPagedSearch // && !isAllQuery TODO issues in object reconciliation
-                ) {
-                    objects = fetchFullObjects(objects, operationOptions, connection);
-                }
-
-                Integer sizeS = objects.size();
-                Integer processed = 0;
-                for (String objectName : objects.keySet()) {
-
-                    LOG.info("The object name: {0}", objectName);
-
-                    LOG.info("The object: {0}", objects.get(objectName).toString());
-
-                    GrouperObject go = objects.get(objectName);
-
-                    ConnectorObjectBuilder co = buildConnectorObject(O_CLASS, go, operationOptions);
-
-                    pseudoCookie = go.getIdentifier();
-                    if (!handler.handle(co.build())) {
-
-                        if (handler instanceof SearchResultsHandler) {
-
-                            LOG.ok("Handling results with pseudoCookie: {0}", pseudoCookie);
-                            LOG.ok("Remaining page results: {0}", sizeS - processed);
-
-                            SearchResult searchResult = new SearchResult(pseudoCookie,
-                                    sizeS - processed);
-                            ((SearchResultsHandler) handler).handleResult(searchResult);
-                        }
-
-                        LOG.warn("Result handling interrupted by handler!");
-                        break;
-                    }
-
-                    processed++;
-                }
+            } else if (isPagedSearch) { //&& !isAllQuery TODO issues in object reconciliation
 
-                if (handler instanceof SearchResultsHandler) {
-
-                    LOG.ok("Handling results with pseudoCookie: {0}", pseudoCookie);
-                    LOG.ok("Remaining page results: {0}", sizeS - processed);
-
-                    SearchResult searchResult = new SearchResult(pseudoCookie, -1);
-                    ((SearchResultsHandler) handler).handleResult(searchResult);
-                }
+                objects = fetchFullObjects(objects, operationOptions, connection);
             }
-
         } catch (SQLException e) {
 
             String errMessage = "Exception occurred during the Execute query operation while processing the query: "
@@ -350,6 +326,28 @@ public class SubjectProcessing extends ObjectProcessing {
             throw new ExceptionHandler().evaluateAndHandleException(e, true, false, errMessage);
 
         }
+
+        return new FetchedPage(objects, rows);
+    }
+
+    @Override
+    protected ObjectClass getObjectClass() {
+        return O_CLASS;
+    }
+
+    @Override
+    protected String getUidColumnName() {
+        return ATTR_UID;
+    }
+
+    @Override
+    protected String getNameColumnName() {
+        return ATTR_NAME;
+    }
+
+    @Override
+    protected String getReferenceColumnName() {
+        return ATTR_SCT_ID_IDX;
     }
 
     @Override
@@ -377,50 +375,33 @@ public class SubjectProcessing extends ObjectProcessing {
                      Connection connection) {
 
         QueryBuilder syncQueryBuilder = syncQuery(syncToken, operationOptions, connection, false);
-        Integer totalCount = syncQueryBuilder.getTotalCount();
+        Integer maxPageSize = configuration.getMaxPageSize();
+
+        SyncBudget syncBudget = new SyncBudget(configuration);
 
         SyncDeltaBuilder builder = new SyncDeltaBuilder();
         builder.setObjectClass(O_CLASS);
 
-        if (totalCount != null) {
-
-            Integer maxPageSize = configuration.getMaxPageSize();
-            Integer pageSize = null;
-
-            if (operationOptions.getOptions().containsKey(OperationOptions.OP_PAGE_SIZE)) {
-
-                pageSize = operationOptions.getPageSize();
-            }
+        if (exceedsMaxPageSize(operationOptions)) {
 
-            if (pageSize != null) {
-
-                if (pageSize > maxPageSize) {
-
-                    handleLargerThanMaxSize(O_CLASS, syncResultsHandler, syncToken, syncQueryBuilder,
-                            operationOptions, connection, totalCount, maxPageSize);
-                }
-            } else {
-
-                if (totalCount > maxPageSize) {
-
-                    handleLargerThanMaxSize(O_CLASS, syncResultsHandler, syncToken, syncQueryBuilder,
-                            operationOptions, connection, totalCount, maxPageSize);
-                }
-            }
+            handleLargerThanMaxSize(O_CLASS, syncResultsHandler, syncToken, syncQueryBuilder,
+                    operationOptions, connection, maxPageSize, syncBudget);
 
         } else {
-
-            Map<String, GrouperObject> objectMap = sync(syncToken, operationOptions, connection, syncQueryBuilder);
+            Map<String, GrouperObject> objectMap = newReadRetry(connection).execute(syncConnection ->
+                    sync(syncToken, operationOptions, syncConnection, syncQueryBuilder));
 
             for (String objID : objectMap.keySet()) {
                 GrouperObject grouperObject = objectMap.get(objID);
 
-                if (!sync(syncResultsHandler, O_CLASS, grouperObject)) {
+                if (!sync(syncResultsHandler, O_CLASS, grouperObject, syncBudget)) {
 
                     break;
                 }
             }
         }
+
+        syncBudget.handleResult(syncResultsHandler);
     }
 
     @Override
@@ -440,11 +421,11 @@ public class SubjectProcessing extends ObjectProcessing {
 
         ResultSet result = null;
 
-        try {
-            PreparedStatement prepareStatement = connection.prepareStatement(queryBuilder.build());
-            result = prepareStatement.executeQuery();
+        try (StatementExecution execution = executeStatement(connection, buildQuery(queryBuilder),
+                configuration.getSyncQueryTimeout())) {
+            result = execution.getResultSet();
 
-            while (result.next()) {
+            while (execution.next()) {
 
                 GrouperObject go = buildGrouperObject(ATTR_UID, ATTR_NAME, result, objectConstructionSchema,
                         multiValuedAttributesCatalogue, null);
@@ -476,6 +457,8 @@ public class SubjectProcessing extends ObjectProcessing {
 
             }
 
+            execution.assembled(objects.size());
+
             if (objects.isEmpty()) {
                 LOG.ok("Empty object set in sync op.");
             } else {
@@ -556,11 +539,11 @@ public class SubjectProcessing extends ObjectProcessing {
 
 
         ResultSet result;
-        try {
-            PreparedStatement prepareStatement = connection.prepareStatement(query);
-            result = prepareStatement.executeQuery();
+        try (StatementExecution execution = executeStatement(connection, query,
+                configuration.getSyncTokenQueryTimeout())) {
+            result = execution.getResultSet();
 
-            while (result.next()) {
+            while (execution.next()) {
 
                 ResultSetMetaData meta = result.getMetaData();
                 int count = meta.getColumnCount();
@@ -649,7 +632,8 @@ public class SubjectProcessing extends ObjectProcessing {
 
             if (attrsToGet.stream().anyMatch(atg -> extended.contains(atg))) {
 
-                tablesAndColumns.put(TABLE_SU_EXTENSION_NAME, extensionColumns);
+                tablesAndColumns.put(TABLE_SU_EXTENSION_NAME, configuration.getPivotExtensionAttributes() ?
+                        pivotedExtensionColumns : extensionColumns);
                 joinMap.put(Map.of(TABLE_SU_EXTENSION_NAME, ATTR_SCT_ID_IDX), ATTR_ID_IDX);
             }
 
@@ -662,20 +646,26 @@ public class SubjectProcessing extends ObjectProcessing {
         }
 
         queryBuilder.setUseFullAlias(true);
+        queryBuilder.setConfiguration(configuration);
+
+        if (configuration.getPivotExtensionAttributes()) {
+
+            queryBuilder.setPivotedTable(TABLE_SU_EXTENSION_NAME, configuration.getExcludeDeletedObjects());
+        }
+
         queryBuilder.setInStatement(Map.of(TABLE_SU_NAME + "." + ATTR_UID, idSet));
 
-        String query = queryBuilder.build();
+        String query = buildQuery(queryBuilder);
 
         ResultSet result;
 
-        Map<String, GrouperObject> objects = new HashMap<>();
+        Map<String, GrouperObject> objects = new LinkedHashMap<>();
 
-        try {
+        try (StatementExecution execution = executeStatement(connection, query,
+                configuration.getSyncQueryTimeout())) {
+            result = execution.getResultSet();
 
-            PreparedStatement prepareStatement = connection.prepareStatement(query);
-            result = prepareStatement.executeQuery();
-
-            while (result.next()) {
+            while (execution.next()) {
 
                 GrouperObject go = buildGrouperObject(ATTR_UID, ATTR_NAME, result, objectConstructionSchema,
                         multiValuedAttributesCatalogue, Map.of(ATTR_MEMBER_OF_NATIVE, ATTR_MEMBER_OF));
@@ -707,11 +697,24 @@ public class SubjectProcessing extends ObjectProcessing {
 
             }
 
+            execution.assembled(objects.size());
+
             if (objects.isEmpty()) {
                 LOG.ok("Empty 'CREATE_OR_UPDATE' object set returned");
             }
 
-            return objects;
+            // The objects are returned in the order in which they were supplied
+            Map<String, GrouperObject> orderedObjects = new LinkedHashMap<>();
+
+            for (String identifier : idSet) {
+
+                if (objects.containsKey(identifier)) {
+
+                    orderedObjects.put(identifier, objects.get(identifier));
+                }
+            }
+
+            return orderedObjects;
         } catch (SQLException e) {
 
             String errMessage = "Exception occurred during the Sync (liveSync) operation. " +
@@ -723,57 +726,14 @@ public class SubjectProcessing extends ObjectProcessing {
         }
     }
 
-
-    public Set<String> fetchExtensionSchema(Connection connection) throws SQLException {
-
-        ResultSet result;
-        QueryBuilder queryBuilder = new QueryBuilder(O_CLASS, TABLE_SU_EXTENSION_NAME, 1000);
-        String query = queryBuilder.build();
-
-        PreparedStatement prepareStatement = connection.prepareStatement(query);
-        result = prepareStatement.executeQuery();
-
-
-        Set<String> extensionAttributeNames = new HashSet<>();
-        while (result.next()) {
-
-
-            ResultSetMetaData meta = result.getMetaData();
-
-            int count = meta.getColumnCount();
-            LOG.ok("Number of columns returned from result set object: {0}", count);
-            // options
-
-            for (int i = 1; i <= count; i++) {
-                String name = meta.getColumnName(i);
-
-                if (ATTR_EXT_NAME.equals(name)) {
-                    String nameValue = result.getString(i);
-
-                    LOG.ok("Extension attribute name which is being added to extended resource schema: {0}", nameValue);
-                    extensionAttributeNames.add(result.getString(i));
-                }
-            }
-        }
-
-        return extensionAttributeNames;
-    }
-
     public QueryBuilder syncQuery(SyncToken syncToken, OperationOptions operationOptions, Connection connection,
                                   boolean isAllObjectClass) {
         QueryBuilder queryBuilder;
 
         String tokenVal;
 
-        Integer maxPageSize = configuration.getMaxPageSize();
-        Integer pageSize = null;
         String[] attrsToHaveInAllSearch = configuration.getAttrsToHaveInAllSearch();
 
-        if (operationOptions.getOptions().containsKey(OperationOptions.OP_PAGE_SIZE)) {
-
-            pageSize = operationOptions.getPageSize();
-        }
-
         if (syncToken.getValue() instanceof Long) {
 
             tokenVal = Long.toString((Long) syncToken.getValue());
@@ -871,24 +831,15 @@ public class SubjectProcessing extends ObjectProcessing {
                     TABLE_SU_NAME, operationOptions);
         }
         queryBuilder.setUseFullAlias(true);
+        queryBuilder.setConfiguration(configuration);
         queryBuilder.setOrderByASC(CollectionUtil.newSet(ATTR_MODIFIED_LATEST));
         queryBuilder.setAsSyncQuery(true);
 
 
-        if (maxPageSize != null) {
-
-            if (pageSize != null) {
+        if (exceedsMaxPageSize(operationOptions)) {
 
-                if (pageSize > maxPageSize) {
-
-                    Integer count = countAll(queryBuilder.clone(), connection);
-                    queryBuilder.setTotalCount(count);
-                }
-            } else {
-
-                Integer count = countAll(queryBuilder.clone(), connection);
-                queryBuilder.setTotalCount(count);
-            }
+            Integer count = countRows(queryBuilder.clone(), connection);
+            queryBuilder.setTotalCount(count);
         }
 
         return queryBuilder;
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.util;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.objects.SyncResultsHandler;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.spi.SyncTokenResultsHandler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Limits the number of deltas, the duration and the approximate size of the deltas delivered by a single
+ * synchronization call.
+ * <p>
+ * The sync token is the latest time stamp of the delivered object and the next synchronization fetches only the
+ * objects with a greater time stamp. Once a limit is reached, the objects sharing the time stamp of the last delivered
+ * object are still delivered, and the synchronization stops at the first object with a different time stamp. The
+ * token of the last delivered delta is then the token to continue from.
+ */
+public class SyncBudget {
+    private static final Log LOG = Log.getLog(SyncBudget.class);
+
+    private final Integer maxDeltas;
+    private final Long maxDurationMillis;
+    private final Long maxBytes;
+    private final long startMillis;
+
+    private int deltas = 0;
+    private long bytes = 0;
+    private Long lastTimestamp;
+    private Long horizon;
+    private boolean stopped = false;
+
+    public SyncBudget(GrouperConfiguration configuration) {
+        this.maxDeltas = configuration.getSyncMaxDeltas();
+        this.maxDurationMillis = configuration.getSyncMaxDuration() != null
+                ? configuration.getSyncMaxDuration() * 1000L : null;
+        this.maxBytes = configuration.getSyncMaxBytes();
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Decides whether the object may be delivered. Returns false if a limit was reached and the object does not
+     * share the time stamp of the last delivered object, or if the object lies beyond the fetched objects, see
+     * {@link #isFetchComplete(LinkedHashMap)}.
+     */
+    public synchronized boolean admit(GrouperObject grouperObject) {
+
+        if (stopped) {
+
+            return false;
+        }
+
+        Long timestamp = grouperObject.getLatestTimestamp();
+
+        if (horizon != null && timestamp != null && timestamp >= horizon) {
+
+            LOG.ok("Sync stopped before the time stamp {0}, the changes following it were not fetched", horizon);
+            stopped = true;
+
+            return false;
+        }
+
+        if (lastTimestamp != null && !lastTimestamp.equals(timestamp) && isExhausted()) {
+
+            LOG.ok("Sync budget exhausted after {0} deltas, {1} bytes and {2} ms, continuing from the time stamp {3}",
+                    deltas, bytes, System.currentTimeMillis() - startMillis, lastTimestamp);
+            stopped = true;
+
+            return false;
+        }
+
+        deltas++;
+        bytes = bytes + estimateSize(grouperObject);
+        lastTimestamp = timestamp;
+
+        return true;
+    }
+
+    /**
+     * Decides whether further pages of changes have to be fetched for the synchronization of all object classes,
+     * which merges the changes of the object classes before delivering them. If more objects than the maximal number
+     * of deltas were fetched, the fetching stops and no object with the time stamp of the last fetched object, or
+     * a later one, is delivered, since the changes sharing that time stamp might not be fetched completely.
+     */
+    public synchronized boolean isFetchComplete(LinkedHashMap<String, GrouperObject> fetchedObjects) {
+
+        if (maxDeltas == null || fetchedObjects.size() <= maxDeltas) {
+
+            return false;
+        }
+
+        Long firstTimestamp = null;
+        Long fetchedTimestamp = null;
+
+        for (GrouperObject grouperObject : fetchedObjects.values()) {
+
+            if (firstTimestamp == null) {
+
+                firstTimestamp = grouperObject.getLatestTimestamp();
+            }
+
+            fetchedTimestamp = grouperObject.getLatestTimestamp();
+        }
+
+        // A single time stamp has to be delivered completely
+        if (firstTimestamp == null || fetchedTimestamp == null || fetchedTimestamp <= firstTimestamp) {
+
+            return false;
+        }
+
+        if (horizon == null || fetchedTimestamp < horizon) {
+
+            horizon = fetchedTimestamp;
+        }
+
+        return true;
+    }
+
+    /**
+     * Hands the token to continue from over to the handler, if the synchronization was stopped by the budget.
+     */
+    public synchronized void handleResult(SyncResultsHandler syncResultsHandler) {
+
+        if (stopped && lastTimestamp != null && syncResultsHandler instanceof SyncTokenResultsHandler) {
+
+            ((SyncTokenResultsHandler) syncResultsHandler).handleResult(new SyncToken(lastTimestamp));
+        }
+    }
+
+    public synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    private boolean isExhausted() {
+
+        return (maxDeltas != null && deltas >= maxDeltas)
+                || (maxBytes != null && bytes >= maxBytes)
+                || (maxDurationMillis != null && System.currentTimeMillis() - startMillis >= maxDurationMillis);
+    }
+
+    private static long estimateSize(GrouperObject grouperObject) {
+
+        long size = length(grouperObject.getIdentifier()) + length(grouperObject.getName());
+
+        for (Map.Entry<String, Object> attribute : grouperObject.getAttributes().entrySet()) {
+
+            size = size + length(attribute.getKey());
+
+            if (attribute.getValue() instanceof Set<?>) {
+
+                for (Object value : (Set<?>) attribute.getValue()) {
+
+                    size = size + length(value);
+                }
+            } else {
+
+                size = size + length(attribute.getValue());
+            }
+        }
+
+        return size;
+    }
+
+    private static int length(Object value) {
+
+        return value != null ? String.valueOf(value).length() : 0;
+    }
+}
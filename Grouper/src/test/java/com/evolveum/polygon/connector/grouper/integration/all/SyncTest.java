@@ -26,6 +26,9 @@ import org.testng.annotations.Test;
 import com.evolveum.polygon.connector.grouper.util.CommonTestClass;
 import com.evolveum.polygon.connector.grouper.util.TestSyncResultsHandler;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SyncTest extends CommonTestClass {
     private static final Log LOG = Log.getLog(SyncTest.class);
 
@@ -73,6 +76,85 @@ public class SyncTest extends CommonTestClass {
         Assert.assertTrue(!handler.getResult().isEmpty());
     }
 
+    @Test()
+    public void syncTestConcurrent() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectClass.ALL_NAME, true);
+        ObjectClass objectClassALL = new ObjectClass(ObjectClass.ALL_NAME);
+        grouperConnector.init(grouperConfiguration);
+        TestSyncResultsHandler handler = getSyncResultHandler();
+
+        grouperConnector.sync(objectClassALL, new SyncToken(0L), handler, options);
+        List<SyncDelta> expected = handler.getResult();
+
+        grouperConfiguration.setConcurrentAllClassSync(true);
+        grouperConfiguration.setConsistentSnapshot(true);
+        grouperConnector.init(grouperConfiguration);
+        handler = getSyncResultHandler();
+
+        grouperConnector.sync(objectClassALL, new SyncToken(0L), handler, options);
+
+        Assert.assertEquals(handler.getResult().size(), expected.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+
+            Assert.assertEquals(handler.getResult().get(i).getUid(), expected.get(i).getUid());
+        }
+    }
+
+    @Test()
+    public void syncTestBudget() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectClass.ALL_NAME, true);
+        ObjectClass objectClassALL = new ObjectClass(ObjectClass.ALL_NAME);
+        grouperConnector.init(grouperConfiguration);
+        TestSyncResultsHandler handler = getSyncResultHandler();
+
+        grouperConnector.sync(objectClassALL, new SyncToken(0L), handler, options);
+        List<SyncDelta> expected = handler.getResult();
+
+        grouperConfiguration.setSyncMaxDeltas(1);
+        grouperConnector.init(grouperConfiguration);
+
+        List<SyncDelta> resumed = new ArrayList<>();
+        SyncToken token = new SyncToken(0L);
+
+        for (int i = 0; i <= expected.size(); i++) {
+
+            handler = getSyncResultHandler();
+            grouperConnector.sync(objectClassALL, token, handler, options);
+
+            if (handler.getResult().isEmpty()) {
+
+                break;
+            }
+
+            resumed.addAll(handler.getResult());
+            token = handler.getResult().get(handler.getResult().size() - 1).getToken();
+        }
+
+        Assert.assertEquals(resumed.size(), expected.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+
+            Assert.assertEquals(resumed.get(i).getUid(), expected.get(i).getUid());
+        }
+    }
+
+    @Test()
+    public void latestSyncTokenConcurrentTest() {
+
+        ObjectClass objectClassAll = new ObjectClass(ObjectClass.ALL_NAME);
+        grouperConnector.init(grouperConfiguration);
+
+        SyncToken expected = grouperConnector.getLatestSyncToken(objectClassAll);
+
+        grouperConfiguration.setConcurrentAllClassSync(true);
+        grouperConnector.init(grouperConfiguration);
+
+        Assert.assertEquals(grouperConnector.getLatestSyncToken(objectClassAll), expected);
+    }
+
     @Test()
     public void latestSyncTokenTest() {
 
@@ -16,8 +16,11 @@
 
 package com.evolveum.polygon.connector.grouper.integration.group;
 
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.ConnectorMetrics;
 import com.evolveum.polygon.connector.grouper.util.GroupProcessing;
 import com.evolveum.polygon.connector.grouper.util.ObjectProcessing;
+import com.evolveum.polygon.connector.grouper.util.PagingCookie;
 import org.identityconnectors.framework.common.objects.filter.*;
 import com.evolveum.polygon.connector.grouper.util.CommonTestClass;
 import com.evolveum.polygon.connector.grouper.util.TestSearchResultsHandler;
@@ -27,6 +30,11 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class FilteringTest extends CommonTestClass {
 
@@ -85,6 +93,141 @@ public class FilteringTest extends CommonTestClass {
 
     }
 
+    @Test()
+    public void fetchAllMaxPagingCountStrategies() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectProcessing.GROUP_NAME);
+        Set<String> exactUids = new HashSet<>();
+
+        for (String countStrategy : List.of(GrouperConfiguration.COUNT_STRATEGY_EXACT,
+                GrouperConfiguration.COUNT_STRATEGY_ESTIMATED, GrouperConfiguration.COUNT_STRATEGY_NONE)) {
+
+            grouperConfiguration = initializeAndFetchGrouperConfiguration();
+            grouperConfiguration.setEnableIdBasedPaging(true);
+            grouperConfiguration.setMaxPageSize(2);
+            grouperConfiguration.setCountStrategy(countStrategy);
+
+            grouperConnector.init(grouperConfiguration);
+            TestSearchResultsHandler handler = getSearchResultHandler();
+
+            grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler, options);
+
+            Set<String> uids = new HashSet<>();
+            handler.getResult().forEach(result -> uids.add(result.getUid().getUidValue()));
+
+            if (exactUids.isEmpty()) {
+
+                exactUids.addAll(uids);
+            }
+
+            Assert.assertEquals(uids, exactUids);
+        }
+    }
+
+    @Test()
+    public void fetchAllMaxPagingConsistentSnapshot() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectProcessing.GROUP_NAME);
+
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConfiguration.setEnableIdBasedPaging(true);
+        grouperConfiguration.setMaxPageSize(2);
+        grouperConnector.init(grouperConfiguration);
+        TestSearchResultsHandler handler = getSearchResultHandler();
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler, options);
+        int expectedSize = handler.getResult().size();
+
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConfiguration.setEnableIdBasedPaging(true);
+        grouperConfiguration.setMaxPageSize(2);
+        grouperConfiguration.setConsistentSnapshot(true);
+        grouperConnector.init(grouperConfiguration);
+        handler = getSearchResultHandler();
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler, options);
+
+        Assert.assertEquals(handler.getResult().size(), expectedSize);
+    }
+
+    @Test()
+    public void fetchAllPagedConsistentSnapshotLastPage() {
+
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConfiguration.setEnableIdBasedPaging(true);
+        grouperConfiguration.setConsistentSnapshot(true);
+        grouperConnector.init(grouperConfiguration);
+
+        TestSearchResultsHandler handler = getSearchResultHandler();
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler,
+                getDefaultOperationOptions(ObjectProcessing.GROUP_NAME, false, null, 1, 1));
+
+        Assert.assertEquals(handler.getResult().size(), 1);
+        Assert.assertNotEquals(handler.getSearchResult().getRemainingPagedResults(), 0,
+                "The first page of one group reported as the last one");
+
+        // The page size covers all the groups, the lookahead finds no further row
+        handler = getSearchResultHandler();
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler,
+                getDefaultOperationOptions(ObjectProcessing.GROUP_NAME, false, null, 1, 100000));
+
+        Assert.assertFalse(handler.getResult().isEmpty());
+        Assert.assertEquals(handler.getSearchResult().getRemainingPagedResults(), 0);
+    }
+
+    @Test()
+    public void fetchAllMaxPagingPrefetch() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectProcessing.GROUP_NAME);
+
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConfiguration.setEnableIdBasedPaging(true);
+        grouperConfiguration.setMaxPageSize(2);
+        grouperConnector.init(grouperConfiguration);
+        TestSearchResultsHandler handler = getSearchResultHandler();
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler, options);
+
+        List<String> expectedUids = new ArrayList<>();
+        handler.getResult().forEach(result -> expectedUids.add(result.getUid().getUidValue()));
+
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConfiguration.setEnableIdBasedPaging(true);
+        grouperConfiguration.setMaxPageSize(2);
+        grouperConfiguration.setPrefetchDepth(2);
+        grouperConfiguration.setConsistentSnapshot(true);
+        grouperConnector.init(grouperConfiguration);
+        handler = getSearchResultHandler();
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler, options);
+
+        List<String> uids = new ArrayList<>();
+        handler.getResult().forEach(result -> uids.add(result.getUid().getUidValue()));
+
+        Assert.assertEquals(uids, expectedUids);
+    }
+
+    @Test()
+    public void fetchAllSlowQueryLog() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectProcessing.GROUP_NAME);
+
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConfiguration.setSlowQueryThreshold(0);
+        grouperConfiguration.setSlowQueryExplain(true);
+        grouperConfiguration.setSlowQueryAnalyzePercentage(100);
+        grouperConnector.init(grouperConfiguration);
+        TestSearchResultsHandler handler = getSearchResultHandler();
+
+        ConnectorMetrics metrics = ConnectorMetrics.getInstance(ObjectProcessing.getResourceKey(grouperConfiguration));
+        metrics.clearSlowQueries();
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler, options);
+
+        Assert.assertTrue(metrics.getSlowQueryLog().size() > 0);
+        Assert.assertTrue(metrics.getSlowQueries()[0].contains("\"Actual Rows\""));
+    }
+
     @Test()
     public void fetchAllPagedCookie() {
 
@@ -107,6 +250,58 @@ public class FilteringTest extends CommonTestClass {
         }
     }
 
+    @Test()
+    public void fetchAllSortedPagedCookie() {
+
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConfiguration.setEnableIdBasedPaging(true);
+        grouperConnector.init(grouperConfiguration);
+
+        // The first ten groups in the sort order, the two pages of five have to follow them
+        List<String> expectedUids = fetchSortedPageUids(null, 10);
+
+        Map<String, Object> firstPage = new HashMap<>(getDefaultOperationOptions(ObjectProcessing.GROUP_NAME, false,
+                null, 1, 5).getOptions());
+        firstPage.put(OperationOptions.OP_SORT_KEYS, new SortKey[]{new SortKey(Name.NAME, true)});
+
+        TestSearchResultsHandler handler = getSearchResultHandler();
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler, new OperationOptions(firstPage));
+        List<ConnectorObject> firstResults = new ArrayList<>(handler.getResult());
+
+        Assert.assertFalse(firstResults.isEmpty(), "The first page is empty, no groups to page through");
+        Assert.assertTrue(firstResults.size() <= 5);
+        Assert.assertEquals(uidsOf(firstResults), expectedUids.subList(0, firstResults.size()));
+
+        ConnectorObject last = firstResults.get(firstResults.size() - 1);
+        String cookie = new PagingCookie(last.getName().getNameValue(), last.getUid().getUidValue()).toString();
+        List<String> secondUids = fetchSortedPageUids(cookie, 5);
+
+        // The second page starts right after the position of the cookie in the sort order
+        Assert.assertFalse(secondUids.contains(last.getUid().getUidValue()));
+        Assert.assertEquals(secondUids, expectedUids.subList(firstResults.size(),
+                Math.min(expectedUids.size(), firstResults.size() + 5)));
+    }
+
+    private List<String> fetchSortedPageUids(String cookie, Integer pageSize) {
+
+        Map<String, Object> page = new HashMap<>(getDefaultOperationOptions(ObjectProcessing.GROUP_NAME, false,
+                cookie, cookie == null ? 1 : null, pageSize).getOptions());
+        page.put(OperationOptions.OP_SORT_KEYS, new SortKey[]{new SortKey(Name.NAME, true)});
+
+        TestSearchResultsHandler handler = getSearchResultHandler();
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, null, handler, new OperationOptions(page));
+
+        return uidsOf(handler.getResult());
+    }
+
+    private List<String> uidsOf(List<ConnectorObject> results) {
+
+        List<String> uids = new ArrayList<>();
+        results.forEach(result -> uids.add(result.getUid().getUidValue()));
+
+        return uids;
+    }
+
     @Test()
     public void fetchAllPagedNoCookie() {
 
@@ -179,6 +374,61 @@ public class FilteringTest extends CommonTestClass {
         }
     }
 
+    @Test()
+    public void equalsUIDCached() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectProcessing.GROUP_NAME);
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConfiguration.setObjectCacheSize(10);
+        grouperConnector.init(grouperConfiguration);
+
+        EqualsFilter filter = (EqualsFilter) FilterBuilder.equalTo(AttributeBuilder.build(Uid.NAME,
+                "34"));
+
+        // The first lookup marks the object, the second one caches it and the third one is served from the cache
+        for (int i = 0; i < 3; i++) {
+            TestSearchResultsHandler handler = getSearchResultHandler();
+
+            grouperConnector.executeQuery(GroupProcessing.O_CLASS, filter, handler, options);
+            ArrayList<ConnectorObject> results = handler.getResult();
+
+            Assert.assertEquals(results.size(), 1);
+            Assert.assertEquals(results.get(0).getUid().getUidValue(), "34");
+        }
+    }
+
+    @Test()
+    public void equalsIgnoreCaseName() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectProcessing.GROUP_NAME);
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConnector.init(grouperConfiguration);
+        TestSearchResultsHandler handler = getSearchResultHandler();
+
+        EqualsFilter uidFilter = (EqualsFilter) FilterBuilder.equalTo(AttributeBuilder.build(Uid.NAME,
+                "34"));
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, uidFilter, handler, options);
+        ArrayList<ConnectorObject> results = handler.getResult();
+
+        Assert.assertFalse(results.isEmpty());
+        String name = results.get(0).getName().getNameValue();
+
+        handler = getSearchResultHandler();
+        EqualsIgnoreCaseFilter filter = (EqualsIgnoreCaseFilter) FilterBuilder.equalsIgnoreCase(
+                AttributeBuilder.build(Name.NAME, name.toUpperCase()));
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, filter, handler, options);
+        results = handler.getResult();
+
+        Assert.assertTrue(results.stream().anyMatch(result -> "34".equals(result.getUid().getUidValue())));
+
+        for (ConnectorObject result : results) {
+
+            Assert.assertTrue(result.getName().getNameValue().equalsIgnoreCase(name));
+        }
+    }
+
     @Test()
     public void equalsUIDAndAttributesToGet() {
 
@@ -234,6 +484,36 @@ public class FilteringTest extends CommonTestClass {
         }
     }
 
+    @Test()
+    public void orEqualsUIDLargeDisjunction() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectProcessing.GROUP_NAME);
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConnector.init(grouperConfiguration);
+        TestSearchResultsHandler handler = getSearchResultHandler();
+
+        List<Filter> equalsFilters = new ArrayList<>();
+
+        for (int i = 1; i <= 2500; i++) {
+
+            equalsFilters.add(FilterBuilder.equalTo(AttributeBuilder.build(Uid.NAME, String.valueOf(i))));
+        }
+
+        OrFilter orFilter = (OrFilter) FilterBuilder.or(equalsFilters);
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, orFilter, handler, options);
+        ArrayList<ConnectorObject> results = handler.getResult();
+
+        Set<String> uids = new HashSet<>();
+        for (ConnectorObject result : results) {
+
+            Assert.assertTrue(uids.add(result.getUid().getUidValue()));
+            Assert.assertTrue(Integer.parseInt(result.getUid().getUidValue()) <= 2500);
+        }
+
+        Assert.assertTrue(uids.contains("34"));
+    }
+
     @Test()
     public void andOrContainsUIDAndAttributesToGet() {
 
@@ -651,4 +931,30 @@ public class FilteringTest extends CommonTestClass {
         }
     }
 
+    @Test()
+    public void containsAllValuesMultiple() {
+
+        OperationOptions options = getDefaultOperationOptions(ObjectProcessing.GROUP_NAME, true);
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        grouperConnector.init(grouperConfiguration);
+        TestSearchResultsHandler handler = getSearchResultHandler();
+
+        ContainsAllValuesFilter filter = (ContainsAllValuesFilter) FilterBuilder.containsAllValues(
+                AttributeBuilder.build(ATTR_MEMBERS, "87", "88"));
+
+        grouperConnector.executeQuery(GroupProcessing.O_CLASS, filter, handler, options);
+        ArrayList<ConnectorObject> results = handler.getResult();
+
+        Assert.assertFalse(results.isEmpty(), "No group with both the members 87 and 88 was returned");
+
+        Set<String> uids = new HashSet<>();
+        for (ConnectorObject result : results) {
+
+            Assert.assertTrue(uids.add(result.getUid().getUidValue()));
+
+            List<Object> members = result.getAttributeByName(ATTR_MEMBERS).getValue();
+            Assert.assertTrue(members.contains("87") && members.contains("88"));
+        }
+    }
+
 }
@@ -677,4 +677,50 @@ public class FilteringTest extends CommonTestClass {
             LOG.info("### END ###");
         }
     }
+
+    @Test()
+    public void equalsExtensionAttribute() {
+
+        grouperConfiguration = initializeAndFetchGrouperConfiguration();
+        String[] extendedProperties = grouperConfiguration.getExtendedSubjectProperties();
+
+        if (extendedProperties == null || extendedProperties.length == 0) {
+
+            LOG.ok("No extension attributes configured, skipping the test.");
+            return;
+        }
+
+        OperationOptions options = getDefaultOperationOptions(SUBJECT_NAME, true);
+        grouperConnector.init(grouperConfiguration);
+        TestSearchResultsHandler handler = getSearchResultHandler();
+
+        grouperConnector.executeQuery(new ObjectClass(SUBJECT_NAME), null, handler, options);
+
+        String extensionAttribute = extendedProperties[0];
+        Attribute expected = handler.getResult().stream()
+                .map(result -> result.getAttributeByName(extensionAttribute))
+                .filter(attribute -> attribute != null && AttributeUtil.getSingleValue(attribute) != null)
+                .findFirst().orElse(null);
+
+        if (expected == null) {
+
+            LOG.ok("No object with the extension attribute {0} present, skipping the test.", extensionAttribute);
+            return;
+        }
+
+        handler = getSearchResultHandler();
+        EqualsFilter filter = (EqualsFilter) FilterBuilder.equalTo(AttributeBuilder.build(extensionAttribute,
+                AttributeUtil.getSingleValue(expected)));
+
+        grouperConnector.executeQuery(new ObjectClass(SUBJECT_NAME), filter, handler, options);
+        ArrayList<ConnectorObject> results = handler.getResult();
+
+        Assert.assertFalse(results.isEmpty());
+
+        for (ConnectorObject result : results) {
+
+            Assert.assertEquals(AttributeUtil.getSingleValue(result.getAttributeByName(extensionAttribute)),
+                    AttributeUtil.getSingleValue(expected));
+        }
+    }
 }
@@ -26,6 +26,9 @@ import org.testng.annotations.Test;
 import java.util.Arrays;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
 public class ConfigurationTests extends CommonTestClass {
@@ -83,6 +86,72 @@ public class ConfigurationTests extends CommonTestClass {
 
         testConfiguration.setEnableIdBasedPaging(true);
         assertEquals(Boolean.TRUE, testConfiguration.getEnableIdBasedPaging());
+
+        testConfiguration.setPivotExtensionAttributes(true);
+        assertEquals(Boolean.TRUE, testConfiguration.getPivotExtensionAttributes());
+
+        testConfiguration.setObjectCacheSize(1000);
+        assertEquals(Integer.valueOf(1000), testConfiguration.getObjectCacheSize());
+
+        testConfiguration.setCountStrategy(GrouperConfiguration.COUNT_STRATEGY_ESTIMATED);
+        assertEquals(GrouperConfiguration.COUNT_STRATEGY_ESTIMATED, testConfiguration.getCountStrategy());
+
+        testConfiguration.setConsistentSnapshot(true);
+        assertEquals(Boolean.TRUE, testConfiguration.getConsistentSnapshot());
+
+        testConfiguration.setPrefetchDepth(2);
+        assertEquals(Integer.valueOf(2), testConfiguration.getPrefetchDepth());
+
+        testConfiguration.setConcurrentAllClassSync(true);
+        assertEquals(Boolean.TRUE, testConfiguration.getConcurrentAllClassSync());
+
+        testConfiguration.setSyncMaxDeltas(500);
+        assertEquals(Integer.valueOf(500), testConfiguration.getSyncMaxDeltas());
+
+        testConfiguration.setSyncMaxDuration(30);
+        assertEquals(Integer.valueOf(30), testConfiguration.getSyncMaxDuration());
+
+        testConfiguration.setSyncMaxBytes(1048576L);
+        assertEquals(Long.valueOf(1048576L), testConfiguration.getSyncMaxBytes());
+
+        testConfiguration.setSlowQueryThreshold(500);
+        assertEquals(Integer.valueOf(500), testConfiguration.getSlowQueryThreshold());
+
+        testConfiguration.setSlowQueryExplain(true);
+        assertEquals(Boolean.TRUE, testConfiguration.getSlowQueryExplain());
+
+        testConfiguration.setSlowQueryAnalyzePercentage(10);
+        assertEquals(Integer.valueOf(10), testConfiguration.getSlowQueryAnalyzePercentage());
+
+        testConfiguration.setReadRetryAttempts(5);
+        assertEquals(Integer.valueOf(5), testConfiguration.getReadRetryAttempts());
+
+        testConfiguration.setReadRetryBackoff(250);
+        assertEquals(Integer.valueOf(250), testConfiguration.getReadRetryBackoff());
+
+        testConfiguration.setMaxConcurrentStatements(4);
+        assertEquals(Integer.valueOf(4), testConfiguration.getMaxConcurrentStatements());
+
+        testConfiguration.setWarmUpConnection(true);
+        assertTrue(testConfiguration.getWarmUpConnection());
+
+        testConfiguration.setSearchQueryTimeout(300);
+        assertEquals(Integer.valueOf(300), testConfiguration.getSearchQueryTimeout());
+
+        testConfiguration.setCountQueryTimeout(30);
+        assertEquals(Integer.valueOf(30), testConfiguration.getCountQueryTimeout());
+
+        testConfiguration.setSyncQueryTimeout(600);
+        assertEquals(Integer.valueOf(600), testConfiguration.getSyncQueryTimeout());
+
+        testConfiguration.setSyncTokenQueryTimeout(10);
+        assertEquals(Integer.valueOf(10), testConfiguration.getSyncTokenQueryTimeout());
+
+        testConfiguration.setPagedSearchSnapshotIdleTimeout(60);
+        assertEquals(Integer.valueOf(60), testConfiguration.getPagedSearchSnapshotIdleTimeout());
+
+        testConfiguration.setRequireSearchIndexes(true);
+        assertTrue(testConfiguration.getRequireSearchIndexes());
     }
 
     @Test
@@ -92,5 +161,25 @@ public class ConfigurationTests extends CommonTestClass {
         assertEquals(Integer.valueOf(10), testConfiguration.getConnectionValidTimeout());
         assertEquals(Boolean.TRUE, testConfiguration.getExcludeDeletedObjects());
         assertEquals(Boolean.FALSE, testConfiguration.getEnableIdBasedPaging());
+        assertEquals(Boolean.FALSE, testConfiguration.getPivotExtensionAttributes());
+        assertEquals(GrouperConfiguration.COUNT_STRATEGY_EXACT, testConfiguration.getCountStrategy());
+        assertEquals(Boolean.FALSE, testConfiguration.getConsistentSnapshot());
+        assertEquals(Boolean.FALSE, testConfiguration.getConcurrentAllClassSync());
+        assertNull(testConfiguration.getSyncMaxDeltas());
+        assertNull(testConfiguration.getSyncMaxDuration());
+        assertNull(testConfiguration.getSyncMaxBytes());
+        assertNull(testConfiguration.getSlowQueryThreshold());
+        assertEquals(Boolean.FALSE, testConfiguration.getSlowQueryExplain());
+        assertNull(testConfiguration.getSlowQueryAnalyzePercentage());
+        assertEquals(Integer.valueOf(3), testConfiguration.getReadRetryAttempts());
+        assertEquals(Integer.valueOf(1000), testConfiguration.getReadRetryBackoff());
+        assertNull(testConfiguration.getMaxConcurrentStatements());
+        assertFalse(testConfiguration.getWarmUpConnection());
+        assertNull(testConfiguration.getSearchQueryTimeout());
+        assertNull(testConfiguration.getCountQueryTimeout());
+        assertNull(testConfiguration.getSyncQueryTimeout());
+        assertNull(testConfiguration.getSyncTokenQueryTimeout());
+        assertEquals(Integer.valueOf(300), testConfiguration.getPagedSearchSnapshotIdleTimeout());
+        assertFalse(testConfiguration.getRequireSearchIndexes());
     }
 }
@@ -54,4 +54,27 @@ public class ConnectionTests extends CommonTestClass {
         grouperConnector.init(grouperConfiguration);
         grouperConnector.test();
     }
+
+    @Test()
+    public void initializeNotCorrectConfigurationValuesAndCheckAlive() {
+// The connection is not opened by the init, so no failure is expected
+        grouperConfiguration.setHost("192.168.208.001");
+        grouperConfiguration.setPort("27960");
+        grouperConfiguration.validate();
+
+        grouperConnector.init(grouperConfiguration);
+        grouperConnector.checkAlive();
+        grouperConnector.dispose();
+    }
+
+    @Test(expectedExceptions = ConnectionFailedException.class)
+    public void initializeNotCorrectConfigurationValuesWithWarmUpAndTestConnectionSelectFail() {
+        grouperConfiguration.setHost("192.168.208.001");
+        grouperConfiguration.setPort("27960");
+        grouperConfiguration.setWarmUpConnection(true);
+        grouperConfiguration.validate();
+
+        grouperConnector.init(grouperConfiguration);
+        grouperConnector.test();
+    }
 }
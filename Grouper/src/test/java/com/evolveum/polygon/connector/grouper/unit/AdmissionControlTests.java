@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.AdmissionControl;
+import com.evolveum.polygon.connector.grouper.util.ConnectorMetrics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionControlTests {
+
+    private GrouperConfiguration configuration(String databaseName, Integer maxConcurrentStatements) {
+
+        GrouperConfiguration configuration = new GrouperConfiguration();
+        configuration.setHost("localhost");
+        configuration.setPort("5432");
+        configuration.setDatabaseName(databaseName);
+        configuration.setMaxConcurrentStatements(maxConcurrentStatements);
+
+        return configuration;
+    }
+
+    @Test()
+    public void notLimitedByDefault() {
+
+        Assert.assertNull(AdmissionControl.getInstance(configuration("grouper", null)));
+    }
+
+    @Test()
+    public void sharedPerDatabase() {
+
+        AdmissionControl admissionControl = AdmissionControl.getInstance(configuration("shared", 2));
+
+        Assert.assertSame(AdmissionControl.getInstance(configuration("shared", 2)), admissionControl);
+        Assert.assertNotSame(AdmissionControl.getInstance(configuration("other", 2)), admissionControl);
+    }
+
+    @Test()
+    public void statementsOverLimitWait() throws Exception {
+
+        AdmissionControl admissionControl = AdmissionControl.getInstance(configuration("limited", 1));
+        ConnectorMetrics metrics = ConnectorMetrics.getInstance("localhost:5432/limited/public/gr");
+        metrics.reset();
+
+        AdmissionControl.Permit permit = admissionControl.acquire(metrics);
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> admissionControl.acquire(metrics).close());
+
+        for (int i = 0; i < 100 && admissionControl.getQueueLength() == 0; i++) {
+
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(admissionControl.getQueueLength(), 1);
+        Assert.assertFalse(waiting.isDone());
+
+        permit.close();
+        permit.close();
+        waiting.get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(admissionControl.getAvailablePermits(), 1);
+        Assert.assertEquals(metrics.getHistogram(ConnectorMetrics.PHASE_ADMISSION_WAIT).getCount(), 2);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.util.ConnectorMetrics;
+import com.evolveum.polygon.connector.grouper.util.LatencyHistogram;
+import com.evolveum.polygon.connector.grouper.util.StatementExecution;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class ConnectorMetricsTests {
+
+    @Test()
+    public void histogramPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 100; i++) {
+
+            histogram.record(i * 1000L);
+        }
+
+        Assert.assertEquals(histogram.getCount(), 100);
+        Assert.assertEquals(histogram.getMaxMicros(), 100);
+        Assert.assertEquals(histogram.getMeanMicros(), 50);
+        Assert.assertTrue(histogram.getPercentileMicros(50) >= 50);
+        Assert.assertTrue(histogram.getPercentileMicros(50) < 64);
+        Assert.assertEquals(histogram.getPercentileMicros(99), 100);
+
+        histogram.reset();
+
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getPercentileMicros(50), 0);
+    }
+
+    @Test()
+    public void metricsRegisteredPerResource() throws Exception {
+
+        ConnectorMetrics metrics = ConnectorMetrics.getInstance("localhost:5432/grouper/public/gr");
+
+        Assert.assertSame(ConnectorMetrics.getInstance("localhost:5432/grouper/public/gr"), metrics);
+
+        metrics.reset();
+        metrics.recordStatement(30);
+        metrics.recordObjectEmitted();
+        metrics.recordObjectEmitted();
+
+        Assert.assertEquals(metrics.getFanOutRatio(), 15.0);
+
+        ObjectName name = new ObjectName("com.evolveum.polygon.connector.grouper:type=ConnectorMetrics,resource="
+                + ObjectName.quote("localhost:5432/grouper/public/gr"));
+
+        Assert.assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RowsFetched"), 30L);
+    }
+
+    @Test()
+    public void statementShapeHash() {
+
+        String shape = StatementExecution.getShapeHash("SELECT * FROM gr_mp_groups WHERE group_name = 'a:b'"
+                + " AND id_index > 42");
+
+        Assert.assertEquals(StatementExecution.getShapeHash("SELECT * FROM gr_mp_groups WHERE group_name = 'it''s'"
+                + " AND id_index > 7"), shape);
+        Assert.assertNotEquals(StatementExecution.getShapeHash("SELECT * FROM gr_mp_groups WHERE group_name = 'a:b'"
+                + " AND id_index < 42"), shape);
+    }
+}
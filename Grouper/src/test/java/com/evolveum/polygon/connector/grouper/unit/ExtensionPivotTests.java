@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.GroupProcessing;
+import com.evolveum.polygon.connector.grouper.util.JsonAttributeReader;
+import com.evolveum.polygon.connector.grouper.util.QueryBuilder;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ExtensionPivotTests {
+
+    private static final String GROUPS = "gr_mp_groups";
+    private static final String GROUP_ATTRIBUTES = "gr_mp_group_attributes";
+
+    private List<String> read(String json) throws IOException {
+
+        List<String> pairs = new ArrayList<>();
+        new JsonAttributeReader(new StringReader(json)).read((name, value) -> pairs.add(name + "=" + value));
+
+        return pairs;
+    }
+
+    private String pivotedSearchQuery(boolean excludeDeleted) {
+
+        QueryBuilder queryBuilder = new QueryBuilder(GroupProcessing.O_CLASS, null,
+                Map.of(GROUPS, Map.of("id_index", Long.class),
+                        GROUP_ATTRIBUTES, Map.of("ext_attributes", String.class)),
+                GROUPS, Map.of(Map.of(GROUP_ATTRIBUTES, "group_id_index"), "id_index"), null);
+        queryBuilder.setUseFullAlias(true);
+        queryBuilder.setConfiguration(new GrouperConfiguration());
+        queryBuilder.setPivotedTable(GROUP_ATTRIBUTES, excludeDeleted);
+
+        return queryBuilder.build();
+    }
+
+    @Test()
+    public void readAggregatedValues() throws IOException {
+
+        Assert.assertEquals(read("{\"ext_a\": [\"x\", \"y\"], \"ext_b\": [\"z\"]}"),
+                List.of("ext_a=x", "ext_a=y", "ext_b=z"));
+    }
+
+    @Test()
+    public void readScalarAndLiteralValues() throws IOException {
+
+        Assert.assertEquals(read("{\"ext_a\": \"x\", \"ext_b\": [1, true, null], \"ext_c\": []}"),
+                List.of("ext_a=x", "ext_b=1", "ext_b=true", "ext_b=null"));
+    }
+
+    @Test()
+    public void readEscapedValues() throws IOException {
+
+        Assert.assertEquals(read("{\"ext_a\": [\"it's \\\"quoted\\\"\", \"\\u00e9,]\"]}"),
+                List.of("ext_a=it's \"quoted\"", "ext_a=\u00e9,]"));
+    }
+
+    @Test()
+    public void readEmptyAggregation() throws IOException {
+
+        Assert.assertEquals(read(""), List.of());
+        Assert.assertEquals(read("{}"), List.of());
+    }
+
+    @Test(expectedExceptions = ConnectorException.class)
+    public void nestedArraysRejected() throws IOException {
+
+        read("{\"ext_a\": [[\"x\"]]}");
+    }
+
+    @Test(expectedExceptions = ConnectorException.class)
+    public void unterminatedArrayRejected() throws IOException {
+
+        read("{\"ext_a\": [\"x\"");
+    }
+
+    @Test()
+    public void pivotAggregatesAllValuesPerName() {
+
+        String query = pivotedSearchQuery(false);
+
+        Assert.assertTrue(query.contains("SELECT jsonb_object_agg(attribute_name, attribute_values) AS ext_attributes"
+                + " FROM (SELECT attribute_name, jsonb_agg(attribute_value) AS attribute_values FROM"), query);
+        Assert.assertTrue(query.contains("attribute_name IS NOT NULL GROUP BY attribute_name) AS attribute_values"),
+                query);
+        Assert.assertFalse(query.contains("IS DISTINCT FROM"), query);
+    }
+
+    @Test()
+    public void pivotExcludesDeletedBeforeGrouping() {
+
+        String query = pivotedSearchQuery(true);
+
+        Assert.assertTrue(query.matches(".*attribute_name IS NOT NULL AND gr_mp_group_attributes\\.deleted "
+                + "IS DISTINCT FROM 'T' GROUP BY attribute_name\\) AS attribute_values.*"), query);
+    }
+}
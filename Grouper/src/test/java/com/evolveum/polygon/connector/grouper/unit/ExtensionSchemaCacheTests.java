@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.ExtensionSchemaCache;
+import com.evolveum.polygon.connector.grouper.util.GroupProcessing;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+
+public class ExtensionSchemaCacheTests {
+
+    private static final String KEY = "localhost:5432/grouper/public/gr/gr_mp_group_attributes/excludeDeleted";
+
+    @Test()
+    public void freshEntryServed() {
+
+        ExtensionSchemaCache cache = new ExtensionSchemaCache();
+        cache.put(KEY, Set.of("ext_a", "ext_b"), 100L);
+
+        Assert.assertEquals(cache.getIfFresh(KEY), Set.of("ext_a", "ext_b"));
+        Assert.assertNull(cache.getIfFresh(KEY + "/other"));
+    }
+
+    @Test()
+    public void expiredEntryNotServed() {
+
+        ExtensionSchemaCache cache = new ExtensionSchemaCache(-1);
+        cache.put(KEY, Set.of("ext_a"), 100L);
+
+        Assert.assertNull(cache.getIfFresh(KEY));
+    }
+
+    @Test()
+    public void revalidatedIfTableNotModified() {
+
+        ExtensionSchemaCache cache = new ExtensionSchemaCache(-1);
+        cache.put(KEY, Set.of("ext_a"), 100L);
+
+        Assert.assertEquals(cache.revalidate(KEY, 100L), Set.of("ext_a"));
+        Assert.assertNull(cache.revalidate(KEY, 200L));
+        Assert.assertNull(cache.revalidate(KEY + "/other", 100L));
+    }
+
+    @Test()
+    public void revalidationProlongsEntry() {
+
+        ExtensionSchemaCache cache = new ExtensionSchemaCache(60000);
+        cache.put(KEY, Set.of("ext_a"), null);
+        cache.invalidate(KEY);
+
+        Assert.assertNull(cache.getIfFresh(KEY));
+
+        cache.put(KEY, Set.of("ext_a"), null);
+
+        Assert.assertEquals(cache.revalidate(KEY, null), Set.of("ext_a"));
+        Assert.assertEquals(cache.getIfFresh(KEY), Set.of("ext_a"));
+    }
+
+    @Test()
+    public void keyDependsOnExcludedDeletedObjects() {
+
+        GrouperConfiguration excluding = new GrouperConfiguration();
+        excluding.setExcludeDeletedObjects(true);
+        GrouperConfiguration including = new GrouperConfiguration();
+        including.setExcludeDeletedObjects(false);
+
+        Assert.assertNotEquals(new GroupProcessing(excluding).getExtensionSchemaCacheKey(),
+                new GroupProcessing(including).getExtensionSchemaCacheKey());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.FilterHandler;
+import com.evolveum.polygon.connector.grouper.util.GroupProcessing;
+import com.evolveum.polygon.connector.grouper.util.ResourceQuery;
+import org.identityconnectors.framework.common.objects.AttributeBuilder;
+import org.identityconnectors.framework.common.objects.filter.Filter;
+import org.identityconnectors.framework.common.objects.filter.FilterBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+public class FilterQuotingTests {
+
+    private static final String EXTENSION_ATTRIBUTE = "ext_description";
+    private static final String COLUMN = "name";
+
+    private String translate(Filter filter) {
+
+        GrouperConfiguration configuration = new GrouperConfiguration();
+        configuration.setExtendedGroupProperties(new String[]{EXTENSION_ATTRIBUTE});
+        new GroupProcessing(configuration);
+
+        return filter.accept(new FilterHandler(), new ResourceQuery(GroupProcessing.O_CLASS,
+                Map.of("gr_mp_groups", Map.of(COLUMN, String.class)), configuration)).getCurrentQuerySnippet();
+    }
+
+    @Test()
+    public void extensionValueQuoted() {
+
+        String snippet = translate(FilterBuilder.equalTo(AttributeBuilder.build(EXTENSION_ATTRIBUTE,
+                "O'Brien' OR '1'='1")));
+
+        Assert.assertTrue(snippet.contains("'O''Brien'' OR ''1''=''1'"), snippet);
+    }
+
+    @Test()
+    public void extensionContainsPatternQuoted() {
+
+        String snippet = translate(FilterBuilder.contains(AttributeBuilder.build(EXTENSION_ATTRIBUTE, "'; DROP")));
+
+        Assert.assertTrue(snippet.contains("'%''; DROP%'"), snippet);
+    }
+
+    @Test()
+    public void extensionPatternQuoted() {
+
+        String snippet = translate(FilterBuilder.startsWith(AttributeBuilder.build(EXTENSION_ATTRIBUTE,
+                "it's 50%")));
+
+        Assert.assertTrue(snippet.contains("'it''s 50\\%%'"), snippet);
+    }
+
+    @Test()
+    public void columnValueQuoted() {
+
+        String snippet = translate(FilterBuilder.equalTo(AttributeBuilder.build(COLUMN, "O'Brien")));
+
+        Assert.assertTrue(snippet.contains("'O''Brien'"), snippet);
+        Assert.assertFalse(snippet.contains("'O'Brien'"), snippet);
+    }
+}
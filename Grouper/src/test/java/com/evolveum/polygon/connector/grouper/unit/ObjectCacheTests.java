@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.GroupProcessing;
+import com.evolveum.polygon.connector.grouper.util.ObjectCache;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ObjectCacheTests {
+
+    private static final String RESOURCE_KEY = "localhost:5432/grouper/public/objectcache";
+
+    private ConnectorObject group(String uid) {
+
+        return new ConnectorObjectBuilder().setObjectClass(GroupProcessing.O_CLASS).setUid(uid).setName("group:" + uid)
+                .build();
+    }
+
+    private String settingsKey(boolean excludeDeleted, boolean pivot, String... extendedGroupProperties) {
+
+        GrouperConfiguration configuration = new GrouperConfiguration();
+        configuration.setExcludeDeletedObjects(excludeDeleted);
+        configuration.setPivotExtensionAttributes(pivot);
+        configuration.setExtendedGroupProperties(extendedGroupProperties);
+
+        return new GroupProcessing(configuration).getObjectSettingsKey();
+    }
+
+    @Test()
+    public void differentSizesShareCache() {
+
+        ObjectCache cache = ObjectCache.getInstance(RESOURCE_KEY + "/sizes", 2);
+        cache.put("group/1", group("1"), 100L);
+
+        Assert.assertSame(ObjectCache.getInstance(RESOURCE_KEY + "/sizes", 3), cache);
+        Assert.assertSame(ObjectCache.getInstance(RESOURCE_KEY + "/sizes", 2), cache);
+        Assert.assertNotNull(cache.get("group/1", 100L));
+
+        cache.put("group/2", group("2"), 100L);
+        cache.put("group/3", group("3"), 100L);
+
+        Assert.assertEquals(cache.getSize(), 3);
+        Assert.assertEquals(cache.getEvictions(), 0);
+    }
+
+    @Test()
+    public void staleEntryNotServed() {
+
+        ObjectCache cache = ObjectCache.getInstance(RESOURCE_KEY + "/stale", 10);
+        cache.put("group/1", group("1"), 100L);
+
+        Assert.assertNull(cache.get("group/1", 200L));
+        Assert.assertNull(cache.get("group/1", 100L));
+    }
+
+    @Test()
+    public void requestedKeyWithoutObjectNotServed() {
+
+        ObjectCache cache = ObjectCache.getInstance(RESOURCE_KEY + "/requested", 10);
+
+        Assert.assertFalse(cache.contains("group/1"));
+        cache.markRequested("group/1");
+
+        Assert.assertTrue(cache.contains("group/1"));
+        Assert.assertNull(cache.get("group/1", null));
+        Assert.assertTrue(cache.contains("group/1"));
+
+        cache.put("group/1", group("1"), 100L);
+
+        Assert.assertNotNull(cache.get("group/1", 100L));
+        Assert.assertEquals(cache.getMisses(), 2);
+        Assert.assertEquals(cache.getHits(), 1);
+    }
+
+    @Test()
+    public void settingsKeyDependsOnConfiguration() {
+
+        String key = settingsKey(true, false, "ext_a", "ext_b");
+
+        Assert.assertEquals(settingsKey(true, false, "ext_b", "ext_a"), key);
+        Assert.assertNotEquals(settingsKey(false, false, "ext_a", "ext_b"), key);
+        Assert.assertNotEquals(settingsKey(true, true, "ext_a", "ext_b"), key);
+        Assert.assertNotEquals(settingsKey(true, false, "ext_a"), key);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.util.PagingCookie;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PagingCookieTests {
+
+    @Test()
+    public void sortedCookieRoundTrip() {
+
+        String cookie = new PagingCookie("Group.Name", "42").setFingerprint("0a1b2c3d4e5f6071")
+                .setSnapshotId("00000003-0000001B-1").toString();
+
+        PagingCookie parsed = PagingCookie.parse(cookie);
+
+        Assert.assertTrue(cookie.startsWith("v1."));
+        Assert.assertTrue(parsed.isSorted());
+        Assert.assertEquals(parsed.getSortValue(), "Group.Name");
+        Assert.assertEquals(parsed.getIdentifier(), "42");
+        Assert.assertEquals(parsed.getFingerprint(), "0a1b2c3d4e5f6071");
+        Assert.assertEquals(parsed.getSnapshotId(), "00000003-0000001B-1");
+    }
+
+    @Test()
+    public void unsortedCookieRoundTrip() {
+
+        PagingCookie parsed = PagingCookie.parse(PagingCookie.unsorted("42").toString());
+
+        Assert.assertFalse(parsed.isSorted());
+        Assert.assertEquals(parsed.getIdentifier(), "42");
+        Assert.assertNull(parsed.getFingerprint());
+        Assert.assertNull(parsed.getSnapshotId());
+        Assert.assertNull(parsed.getTotalCount());
+    }
+
+    @Test()
+    public void totalCountRoundTrip() {
+
+        String cookie = PagingCookie.unsorted("42").setFingerprint("0a1b2c3d4e5f6071").setTotalCount(1500)
+                .toString();
+
+        PagingCookie parsed = PagingCookie.parse(cookie);
+
+        Assert.assertEquals(parsed.getTotalCount(), Integer.valueOf(1500));
+        Assert.assertEquals(parsed.getFingerprint(), "0a1b2c3d4e5f6071");
+        Assert.assertNull(parsed.getSnapshotId());
+    }
+
+    @Test()
+    public void nullSortValueRoundTrip() {
+
+        PagingCookie parsed = PagingCookie.parse(new PagingCookie(null, "42").toString());
+
+        Assert.assertTrue(parsed.isSorted());
+        Assert.assertNull(parsed.getSortValue());
+    }
+
+    @Test()
+    public void legacyCookies() {
+
+        PagingCookie numeric = PagingCookie.parse("42");
+
+        Assert.assertFalse(numeric.isSorted());
+        Assert.assertEquals(numeric.getIdentifier(), "42");
+
+        PagingCookie sorted = PagingCookie.parse("42.R3JvdXA");
+
+        Assert.assertTrue(sorted.isSorted());
+        Assert.assertEquals(sorted.getSortValue(), "Group");
+        Assert.assertEquals(sorted.getIdentifier(), "42");
+    }
+
+    @Test(expectedExceptions = ConnectorException.class)
+    public void malformedCookie() {
+
+        PagingCookie.parse("42 OR 1=1");
+    }
+}
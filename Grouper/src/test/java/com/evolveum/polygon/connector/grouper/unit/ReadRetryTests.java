@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.ConnectorMetrics;
+import com.evolveum.polygon.connector.grouper.util.ReadRetry;
+import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReadRetryTests {
+
+    private static final String RESOURCE_KEY = "localhost:5432/grouper/public/retry";
+
+    private ReadRetry readRetry(AtomicInteger reconnects) {
+
+        GrouperConfiguration configuration = new GrouperConfiguration();
+        configuration.setReadRetryAttempts(2);
+        configuration.setReadRetryBackoff(1);
+
+        return new ReadRetry(configuration, null, () -> {
+
+            reconnects.incrementAndGet();
+            return null;
+        }, ConnectorMetrics.getInstance(RESOURCE_KEY));
+    }
+
+    @Test()
+    public void retryOnConnectionLoss() {
+
+        AtomicInteger reconnects = new AtomicInteger();
+        AtomicInteger reads = new AtomicInteger();
+        ConnectorMetrics.getInstance(RESOURCE_KEY).reset();
+
+        String result = readRetry(reconnects).execute(connection -> {
+
+            if (reads.incrementAndGet() == 1) {
+
+                throw new ConnectionFailedException(new SQLException("Connection reset", "08006"));
+            }
+
+            return "page";
+        });
+
+        Assert.assertEquals(result, "page");
+        Assert.assertEquals(reads.get(), 2);
+        Assert.assertEquals(reconnects.get(), 1);
+        Assert.assertEquals(ConnectorMetrics.getInstance(RESOURCE_KEY).getReadRetries(), 1);
+    }
+
+    @Test()
+    public void retryOnFailedReconnect() {
+
+        AtomicInteger reconnects = new AtomicInteger();
+        AtomicInteger reads = new AtomicInteger();
+
+        GrouperConfiguration configuration = new GrouperConfiguration();
+        configuration.setReadRetryAttempts(3);
+        configuration.setReadRetryBackoff(1);
+
+        // The database is still failing over when the first new connection is opened
+        ReadRetry readRetry = new ReadRetry(configuration, null, () -> {
+
+            if (reconnects.incrementAndGet() == 1) {
+
+                throw new ConnectionFailedException("Database connection could not be established by the "
+                        + "connector: Connection refused", new SQLException("Connection refused", "08001"));
+            }
+
+            return null;
+        }, ConnectorMetrics.getInstance(RESOURCE_KEY));
+
+        String result = readRetry.execute(connection -> {
+
+            if (reads.incrementAndGet() == 1) {
+
+                throw new ConnectionFailedException(new SQLException("Connection reset", "08006"));
+            }
+
+            return "page";
+        });
+
+        Assert.assertEquals(result, "page");
+        Assert.assertEquals(reads.get(), 2);
+        Assert.assertEquals(reconnects.get(), 2);
+    }
+
+    @Test(expectedExceptions = ConnectionFailedException.class)
+    public void retryAttemptsExhausted() {
+
+        AtomicInteger reconnects = new AtomicInteger();
+
+        try {
+
+            readRetry(reconnects).execute(connection -> {
+
+                throw new ConnectionFailedException(new SQLException("Terminating connection", "57P01"));
+            });
+        } finally {
+
+            Assert.assertEquals(reconnects.get(), 2);
+        }
+    }
+
+    @Test()
+    public void noRetryOnPermanentFailure() {
+
+        AtomicInteger reconnects = new AtomicInteger();
+
+        try {
+
+            readRetry(reconnects).execute(connection -> {
+
+                throw new ConnectorException(new SQLException("Syntax error", "42601"));
+            });
+
+            Assert.fail("The exception was not rethrown");
+        } catch (ConnectorException e) {
+
+            Assert.assertEquals(reconnects.get(), 0);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.evolveum.polygon.connector.grouper.unit;
 
+import com.evolveum.polygon.connector.grouper.GrouperConnector;
 import com.evolveum.polygon.connector.grouper.util.ObjectProcessing;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.ConfigurationException;
@@ -95,4 +96,21 @@ public class SchemaTests extends CommonTestClass {
 
         Assert.assertTrue(hasGroupExtensions && hasSubjectExtensions);
     }
+
+    @Test()
+    public void cachedSchemaTest() {
+        grouperConnector.init(grouperConfiguration);
+        Schema schema = grouperConnector.schema();
+
+        GrouperConnector secondConnector = new GrouperConnector();
+        secondConnector.init(initializeAndFetchGrouperConfiguration());
+
+        try {
+
+            Assert.assertSame(secondConnector.schema(), schema);
+        } finally {
+
+            secondConnector.dispose();
+        }
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.GroupProcessing;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+public class SearchIndexTests {
+
+    /**
+     * A connection returning the rows of the 'pg_indexes' query, as table, index name and index definition.
+     */
+    private Connection connection(List<String[]> rows) {
+
+        Iterator<String[]> iterator = rows.iterator();
+        String[][] current = new String[1][];
+
+        ResultSet resultSet = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{ResultSet.class}, (proxy, method, args) -> {
+
+                    if (method.getName().equals("next")) {
+
+                        current[0] = iterator.hasNext() ? iterator.next() : null;
+                        return current[0] != null;
+                    }
+
+                    return method.getName().equals("getString") ? current[0][(Integer) args[0] - 1] : null;
+                });
+
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{PreparedStatement.class}, (proxy, method, args) -> {
+
+                    if (method.getName().equals("hashCode")) {
+
+                        return System.identityHashCode(proxy);
+                    } else if (method.getName().equals("equals")) {
+
+                        return proxy == args[0];
+                    }
+
+                    return method.getName().equals("executeQuery") ? resultSet : null;
+                });
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> method.getName().equals("prepareStatement") ? statement : null);
+    }
+
+    @Test()
+    public void missingLowerIndexesReported() throws SQLException {
+
+        List<String> missing = new GroupProcessing(new GrouperConfiguration()).fetchMissingSearchIndexes(
+                connection(List.<String[]>of(new String[]{"gr_mp_groups", "gr_mp_groups_group_name_trgm",
+                        "CREATE INDEX gr_mp_groups_group_name_trgm ON public.gr_mp_groups USING gin " +
+                                "(group_name gin_trgm_ops)"})));
+
+        Assert.assertEquals(missing.size(), 2);
+        Assert.assertTrue(missing.get(0).endsWith("ON gr_mp_group_attributes (lower(attribute_value))"),
+                missing.get(0));
+        Assert.assertTrue(missing.get(1).endsWith("ON gr_mp_groups (lower(group_name))"), missing.get(1));
+    }
+
+    @Test()
+    public void presentLowerIndexesNotReported() throws SQLException {
+
+        List<String> missing = new GroupProcessing(new GrouperConfiguration()).fetchMissingSearchIndexes(
+                connection(List.of(
+                        new String[]{"gr_mp_groups", "gr_mp_groups_lower_group_name",
+                                "CREATE INDEX gr_mp_groups_lower_group_name ON public.gr_mp_groups USING btree " +
+                                        "(lower((group_name)::text))"},
+                        new String[]{"gr_mp_group_attributes", "gr_mp_group_attributes_lower_value",
+                                "CREATE INDEX gr_mp_group_attributes_lower_value ON " +
+                                        "public.gr_mp_group_attributes USING btree (lower(attribute_value))"})));
+
+        Assert.assertEquals(missing, List.of());
+    }
+}
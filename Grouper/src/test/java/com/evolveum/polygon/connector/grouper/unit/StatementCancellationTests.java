@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2010-2023 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.polygon.connector.grouper.unit;
+
+import com.evolveum.polygon.connector.grouper.GrouperConfiguration;
+import com.evolveum.polygon.connector.grouper.util.ActiveStatements;
+import com.evolveum.polygon.connector.grouper.util.AdmissionControl;
+import com.evolveum.polygon.connector.grouper.util.ConnectorMetrics;
+import com.evolveum.polygon.connector.grouper.util.ExceptionHandler;
+import com.evolveum.polygon.connector.grouper.util.StatementExecution;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class StatementCancellationTests {
+
+    private static final String RESOURCE_KEY = "localhost:5432/grouper/public/cancellation";
+
+    /**
+     * A statement recording the calls of its methods, returning an empty result set.
+     */
+    private PreparedStatement statement(List<String> calls) {
+
+        return statement(calls, () -> { });
+    }
+
+    /**
+     * A statement recording the calls of its methods, running the callback when it is executed.
+     */
+    private PreparedStatement statement(List<String> calls, Runnable onExecute) {
+
+        ResultSet resultSet = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{ResultSet.class}, (proxy, method, args) -> method.getName().equals("next") ? false : null);
+
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{PreparedStatement.class}, (proxy, method, args) -> {
+
+                    if (method.getName().equals("hashCode")) {
+
+                        return System.identityHashCode(proxy);
+                    } else if (method.getName().equals("equals")) {
+
+                        return proxy == args[0];
+                    }
+
+                    calls.add(args != null && args.length == 1 ? method.getName() + ":" + args[0] : method.getName());
+
+                    if (method.getName().equals("executeQuery")) {
+
+                        onExecute.run();
+                        return resultSet;
+                    }
+
+                    return null;
+                });
+    }
+
+    private Connection connection(PreparedStatement statement) {
+
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> method.getName().equals("prepareStatement") ? statement : null);
+    }
+
+    @Test()
+    public void executionRegistersStatementWithTimeout() throws SQLException {
+
+        List<String> calls = new ArrayList<>();
+        ActiveStatements parent = new ActiveStatements(null);
+        ActiveStatements activeStatements = new ActiveStatements(parent);
+
+        try (StatementExecution execution = StatementExecution.execute(connection(statement(calls)),
+                new GrouperConfiguration(), "SELECT 1", ConnectorMetrics.getInstance(RESOURCE_KEY), null, null, 30,
+                activeStatements)) {
+
+            Assert.assertEquals(activeStatements.size(), 1);
+            Assert.assertEquals(parent.size(), 1);
+            Assert.assertFalse(execution.next());
+        }
+
+        Assert.assertEquals(activeStatements.size(), 0);
+        Assert.assertEquals(parent.size(), 0);
+        Assert.assertEquals(calls, List.of("setQueryTimeout:30", "executeQuery", "close"));
+    }
+
+    @Test()
+    public void slowQueryExplainExecutedAsQuery() throws SQLException {
+
+        List<String> calls = new ArrayList<>();
+        List<String> explainCalls = new ArrayList<>();
+        ActiveStatements activeStatements = new ActiveStatements(null);
+        List<Integer> registered = new ArrayList<>();
+
+        GrouperConfiguration configuration = new GrouperConfiguration();
+        configuration.setHost("cancellation");
+        configuration.setMaxConcurrentStatements(1);
+        configuration.setSlowQueryThreshold(0);
+        configuration.setSlowQueryExplain(true);
+        AdmissionControl admissionControl = AdmissionControl.getInstance(configuration);
+
+        Iterator<PreparedStatement> statements = List.of(statement(calls), statement(explainCalls, () -> {
+
+            registered.add(activeStatements.size());
+            registered.add(admissionControl.getAvailablePermits());
+        })).iterator();
+        Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, (proxy, method, args) -> {
+
+                    if (method.getName().equals("prepareStatement")) {
+
+                        return statements.next();
+                    }
+
+                    return method.getName().equals("getAutoCommit") ? true : null;
+                });
+
+        try (StatementExecution execution = StatementExecution.execute(connection, configuration, "SELECT 1",
+                ConnectorMetrics.getInstance(RESOURCE_KEY), null, admissionControl, 30, activeStatements)) {
+
+            Assert.assertFalse(execution.next());
+        }
+
+        Assert.assertEquals(explainCalls, List.of("setQueryTimeout:30", "executeQuery", "close"));
+        // While the plan is evaluated, the explain statement is registered and holds the only permit
+        Assert.assertEquals(registered, List.of(2, 0));
+        Assert.assertEquals(activeStatements.size(), 0);
+        Assert.assertEquals(admissionControl.getAvailablePermits(), 1);
+    }
+
+    @Test()
+    public void executionWithoutTimeout() throws SQLException {
+
+        List<String> calls = new ArrayList<>();
+
+        try (StatementExecution execution = StatementExecution.execute(connection(statement(calls)),
+                new GrouperConfiguration(), "SELECT 1", ConnectorMetrics.getInstance(RESOURCE_KEY), null, null, 0,
+                new ActiveStatements(null))) {
+
+            Assert.assertFalse(execution.next());
+        }
+
+        Assert.assertEquals(calls, List.of("executeQuery", "close"));
+    }
+
+    @Test()
+    public void cancelOnlyOwnStatements() {
+
+        List<String> firstCalls = new ArrayList<>();
+        List<String> secondCalls = new ArrayList<>();
+        ActiveStatements parent = new ActiveStatements(null);
+        ActiveStatements first = new ActiveStatements(parent);
+        ActiveStatements second = new ActiveStatements(parent);
+
+        first.add(statement(firstCalls));
+        second.add(statement(secondCalls));
+        first.cancelAll();
+
+        Assert.assertEquals(firstCalls, List.of("cancel"));
+        Assert.assertEquals(secondCalls, List.of());
+
+        parent.cancelAll();
+
+        Assert.assertEquals(firstCalls, List.of("cancel", "cancel"));
+        Assert.assertEquals(secondCalls, List.of("cancel"));
+    }
+
+    @Test()
+    public void cancelledStatementTimesOut() {
+
+        RuntimeException e = new ExceptionHandler().evaluateAndHandleException(
+                new SQLException("canceling statement due to statement timeout", "57014"), false, false, "");
+
+        Assert.assertTrue(e instanceof OperationTimeoutException);
+    }
+}
@@ -29,6 +29,8 @@ public class TestSearchResultsHandler implements SearchResultsHandler {
 
     private static final Log LOG = Log.getLog(TestSearchResultsHandler.class);
 
+    private SearchResult searchResult;
+
     public TestSearchResultsHandler() {
 
         result.clear();
@@ -44,6 +46,7 @@ public class TestSearchResultsHandler implements SearchResultsHandler {
     @Override
     public void handleResult(SearchResult result) {
         LOG.info("Im handling {0}", result.getRemainingPagedResults());
+        searchResult = result;
 
     }
 
@@ -51,4 +54,9 @@ public class TestSearchResultsHandler implements SearchResultsHandler {
 
         return TestSearchResultsHandler.result;
     }
+
+    public SearchResult getSearchResult() {
+
+        return searchResult;
+    }
 }
\ No newline at end of file